@@ -0,0 +1,61 @@
+import java.util.Random;
+
+/**
+ * Compares registering freelancers one by one with registerFreelancer against
+ * a single registerFreelancers batch with bulk rebuilds enabled, and checks both
+ * systems rank the same.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx3g -cp out BulkRegisterBenchmark [freelancers]
+ */
+public class BulkRegisterBenchmark {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Random random = new Random(42);
+        String[] ids = new String[count];
+        String[] services = new String[count];
+        int[] values = new int[6 * count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "f" + i;
+            services[i] = SERVICES[random.nextInt(SERVICES.length)];
+            values[6 * i] = 1 + random.nextInt(500);
+            for (int k = 1; k < 6; k++) {
+                values[6 * i + k] = random.nextInt(101);
+            }
+        }
+
+        OutputSink sink = new OutputSink();
+        GigMatchSystem single = new GigMatchSystem();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            int v = 6 * i;
+            single.registerFreelancer(ids[i], services[i], values[v], values[v + 1], values[v + 2],
+                    values[v + 3], values[v + 4], values[v + 5], sink);
+            sink.reset();
+        }
+        long singleMs = (System.nanoTime() - start) / 1_000_000;
+
+        GigMatchSystem batch = new GigMatchSystem();
+        batch.setBulkRebuild(true);
+        start = System.nanoTime();
+        batch.registerFreelancers(ids, services, values, count, sink);
+        long batchMs = (System.nanoTime() - start) / 1_000_000;
+        sink.reset();
+
+        System.out.printf("%d freelancers: one by one %d ms, batch %d ms%n", count, singleMs, batchMs);
+
+        single.registerCustomer("c0");
+        batch.registerCustomer("c0");
+        for (String service : SERVICES) {
+            if (!single.requestJob("c0", service, 20).equals(batch.requestJob("c0", service, 20))) {
+                throw new IllegalStateException("rankings differ for " + service);
+            }
+        }
+        System.out.println("rankings match");
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress test for ConcurrentGigMatchSystem: worker threads hammer a shared
+ * system with a random mix of operations on overlapping customers and
+ * freelancers while a checker thread repeatedly validates invariants under
+ * the global barrier. At the end the responses seen by the workers are
+ * reconciled with the final state.
+ *
+ * Phase 1 leaves out service changes, so the system must stay on per-service
+ * locking; phase 2 adds service changes and monthly simulations.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out ConcurrentStress [threads] [opsPerThread] [freelancers] [customers]
+ */
+public class ConcurrentStress {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    private static int freelancerCount;
+    private static int customerCount;
+
+    // Outcomes reported to the workers
+    private static final LongAdder employments = new LongAdder();
+    private static final LongAdder releases = new LongAdder();
+    private static final LongAdder checks = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        freelancerCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        customerCount = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+        ConcurrentGigMatchSystem system = new ConcurrentGigMatchSystem();
+
+        // Registrations run concurrently too, each thread taking a slice of the IDs
+        runWorkers(threads, t -> {
+            Random random = new Random(t);
+            for (int i = t; i < freelancerCount; i += threads) {
+                expect(system.registerFreelancer("f" + i, SERVICES[random.nextInt(SERVICES.length)],
+                        1 + random.nextInt(500), random.nextInt(101), random.nextInt(101),
+                        random.nextInt(101), random.nextInt(101), random.nextInt(101)),
+                        "registered freelancer");
+            }
+            for (int i = t; i < customerCount; i += threads) {
+                expect(system.registerCustomer("c" + i), "registered customer");
+            }
+        });
+        system.checkConsistency();
+
+        for (int phase = 1; phase <= 2; phase++) {
+            boolean serviceChanges = phase == 2;
+            long start = System.nanoTime();
+            AtomicBoolean done = new AtomicBoolean();
+            Thread checker = new Thread(() -> {
+                while (!done.get()) {
+                    system.checkConsistency();
+                    checks.increment();
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "checker");
+            checker.start();
+            int seedBase = phase * 1000;
+            runWorkers(threads, t -> {
+                Random random = new Random(seedBase + t);
+                for (int i = 0; i < opsPerThread; i++) {
+                    randomOperation(system, random, serviceChanges && t == 0);
+                }
+            });
+            done.set(true);
+            checker.join();
+            system.checkConsistency();
+            reconcile(system);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("phase %d: %d ops on %d threads in %d ms, %d consistency checks, "
+                    + "serialized: %s%n", phase, (long) threads * opsPerThread, threads, ms,
+                    checks.sumThenReset(), system.isSerialized());
+            if (phase == 1 && system.isSerialized()) {
+                throw new IllegalStateException("fell back to serialized execution without service changes");
+            }
+        }
+        System.out.println("all invariants held");
+    }
+
+    private static void randomOperation(ConcurrentGigMatchSystem system, Random random, boolean monthly) {
+        String f = "f" + random.nextInt(freelancerCount);
+        String c = "c" + random.nextInt(customerCount);
+        int op = random.nextInt(100);
+        String response;
+        if (op < 20) {
+            response = system.requestJob(c, SERVICES[random.nextInt(SERVICES.length)], 1 + random.nextInt(5));
+            if (response.contains("auto-employed")) employments.increment();
+        } else if (op < 30) {
+            response = system.employ(c, f);
+            if (response.contains(" employed ")) employments.increment();
+        } else if (op < 50) {
+            response = system.completeAndRate(f, random.nextInt(6));
+            if (response.contains("completed job")) releases.increment();
+        } else if (op < 55) {
+            response = system.cancelByFreelancer(f);
+            if (response.startsWith("cancelled by freelancer")) releases.increment();
+        } else if (op < 60) {
+            // Usually not the employing customer; then it is an error
+            response = system.cancelByCustomer(c, f);
+            if (response.startsWith("cancelled by customer")) releases.increment();
+        } else if (op < 65) {
+            response = system.blacklist(c, f);
+        } else if (op < 70) {
+            response = system.unblacklist(c, f);
+        } else if (op < 78) {
+            response = system.updateSkill(f, random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101));
+        } else if (op < 89) {
+            response = system.queryFreelancer(f);
+            expect(response, f + ": ");
+        } else if (monthly && op < 91) {
+            response = system.changeService(f, SERVICES[random.nextInt(SERVICES.length)],
+                    1 + random.nextInt(500));
+        } else if (monthly && op == 91 && random.nextInt(20) == 0) {
+            response = system.simulateMonth();
+            expect(response, "month complete");
+        } else {
+            response = system.queryCustomer(c);
+            expect(response, c + ": ");
+        }
+        if (response.isEmpty()) {
+            throw new IllegalStateException("empty response");
+        }
+    }
+
+    /**
+     * The employments started and ended according to the responses must match
+     * the customers' counters and the freelancers' availability.
+     */
+    private static void reconcile(ConcurrentGigMatchSystem system) {
+        long totalEmployments = 0;
+        for (int i = 0; i < customerCount; i++) {
+            String response = system.queryCustomer("c" + i);
+            totalEmployments += Long.parseLong(response.substring(response.lastIndexOf(' ') + 1));
+        }
+        if (totalEmployments != employments.sum()) {
+            throw new IllegalStateException(totalEmployments + " employments recorded, "
+                    + employments.sum() + " reported");
+        }
+        long employed = 0;
+        for (int i = 0; i < freelancerCount; i++) {
+            if (system.queryFreelancer("f" + i).contains("available: no")) {
+                employed++;
+            }
+        }
+        long active = employments.sum() - releases.sum();
+        if (employed != active) {
+            throw new IllegalStateException(employed + " freelancers employed, " + active + " reported");
+        }
+    }
+
+    private static void expect(String response, String prefix) {
+        if (!response.startsWith(prefix)) {
+            throw new IllegalStateException("unexpected response: " + response);
+        }
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runWorkers(int threads, Worker worker) throws Exception {
+        Thread[] workers = new Thread[threads];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    worker.run(thread);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        if (failure[0] == null) failure[0] = e;
+                    }
+                }
+            }, "worker-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        if (failure[0] != null) {
+            throw new IllegalStateException("worker failed", failure[0]);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Finds where rebuilding a MaxHeap (beginBulk/endBulk) beats applying a batch of
+ * changes one at a time, the break-even point MaxHeap.prefersRebuild encodes.
+ * For each heap size and share of changed entries, half the changes remove
+ * random entries and half insert new ones (as a month of service changes does
+ * to a ranking); both ways start from the same heap and the median of several
+ * runs is reported, together with changes * log / m, the quantity
+ * prefersRebuild compares against its constant (m is the heap size plus the
+ * changes and log its bit length).
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx4g -cp out HeapRebuildBenchmark [sizes] [percents] [runs]
+ * e.g. java -Xmx4g -cp out HeapRebuildBenchmark 10000,100000,1000000 1,2,5,10,20,40 5
+ */
+public class HeapRebuildBenchmark {
+    public static void main(String[] args) {
+        int[] sizes = parse(args.length > 0 ? args[0] : "10000,100000,1000000");
+        int[] percents = parse(args.length > 1 ? args[1] : "1,2,5,10,15,20,30,40,60");
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println("n\tchanges%\tchanges*log/m\tone at a time ms\trebuild ms\tprefersRebuild");
+        for (int n : sizes) {
+            int maxChanges = (int) ((long) n * percents[percents.length - 1] / 100);
+            Random random = new Random(42);
+            IdRegistry<Freelancer> freelancerIds = new IdRegistry<>(true);
+            FreelancerStore store = new FreelancerStore(n + maxChanges);
+            Freelancer[] freelancers = new Freelancer[n + maxChanges];
+            for (int i = 0; i < freelancers.length; i++) {
+                Freelancer f = new Freelancer(store, "f" + i, "web_dev", 1 + random.nextInt(500),
+                        random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                        random.nextInt(101), random.nextInt(101));
+                f.handle = freelancerIds.register(f.id, f);
+                f.setAverageRating(random.nextInt(51) / 10.0);
+                freelancers[i] = f;
+            }
+
+            for (int percent : percents) {
+                int changes = (int) ((long) n * percent / 100);
+                long[] serial = new long[runs];
+                long[] bulk = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    int[] victims = victims(n, changes / 2, new Random(run));
+                    serial[run] = time(freelancers, freelancerIds, n, victims, changes - changes / 2, false);
+                    bulk[run] = time(freelancers, freelancerIds, n, victims, changes - changes / 2, true);
+                }
+                MaxHeap probe = build(freelancers, freelancerIds, n);
+                int m = n + changes;
+                System.out.printf("%d\t%d\t%.2f\t%.2f\t%.2f\t%b%n", n, percent,
+                        (double) changes * (32 - Integer.numberOfLeadingZeros(m)) / m,
+                        median(serial) / 1e6, median(bulk) / 1e6, probe.prefersRebuild(changes));
+            }
+        }
+    }
+
+    /**
+     * Time removing the victims and inserting the next inserts spare freelancers,
+     * one at a time or as one rebuild.
+     */
+    private static long time(Freelancer[] freelancers, IdRegistry<Freelancer> freelancerIds, int n,
+                             int[] victims, int inserts, boolean rebuild) {
+        MaxHeap heap = build(freelancers, freelancerIds, n);
+        long start = System.nanoTime();
+        if (rebuild) {
+            heap.beginBulk();
+        }
+        for (int v : victims) {
+            heap.remove(freelancers[v]);
+        }
+        for (int i = 0; i < inserts; i++) {
+            heap.insert(freelancers[n + i]);
+        }
+        if (rebuild) {
+            heap.endBulk();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (heap.size() != n - victims.length + inserts) {
+            throw new IllegalStateException("heap size " + heap.size());
+        }
+        return elapsed;
+    }
+
+    private static MaxHeap build(Freelancer[] freelancers, IdRegistry<Freelancer> freelancerIds, int n) {
+        MaxHeap heap = new MaxHeap(new int[]{95, 75, 85, 80, 90}, freelancerIds);
+        for (Freelancer f : freelancers) {
+            f.heapIndex = -1;
+        }
+        heap.beginBulk();
+        for (int i = 0; i < n; i++) {
+            heap.insert(freelancers[i]);
+        }
+        heap.endBulk();
+        return heap;
+    }
+
+    /**
+     * count distinct random indices below n.
+     */
+    private static int[] victims(int n, int count, Random random) {
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = all[i];
+            all[i] = all[j];
+            all[j] = t;
+        }
+        int[] victims = new int[count];
+        System.arraycopy(all, 0, victims, 0, count);
+        return victims;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int[] parse(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.Random;
+
+/**
+ * Measures simulateMonth on a large, mostly idle system: many registered
+ * freelancers and customers, with only a small share employed, rated or
+ * cancelled each month. Month-end cost should follow that activity, not the
+ * number of accounts.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx2g -cp out MonthBenchmark [freelancers] [customers] [jobsPerMonth] [months]
+ */
+public class MonthBenchmark {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    public static void main(String[] args) {
+        int freelancerCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int customerCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int jobsPerMonth = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int months = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        Random random = new Random(42);
+        GigMatchSystem system = new GigMatchSystem();
+        OutputSink sink = new OutputSink();
+        for (int i = 0; i < freelancerCount; i++) {
+            system.registerFreelancer("f" + i, SERVICES[random.nextInt(SERVICES.length)],
+                    1 + random.nextInt(500), random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101), sink);
+            sink.reset();
+        }
+        for (int i = 0; i < customerCount; i++) {
+            system.registerCustomer("c" + i, sink);
+            sink.reset();
+        }
+
+        long monthNanos = 0;
+        long worst = 0;
+        for (int month = 0; month < months; month++) {
+            // A burst of jobs on a few accounts, each completed or cancelled within the month
+            for (int j = 0; j < jobsPerMonth; j++) {
+                String freelancer = "f" + random.nextInt(freelancerCount);
+                system.employ("c" + random.nextInt(customerCount), freelancer, sink);
+                if (random.nextInt(4) == 0) {
+                    system.cancelByFreelancer(freelancer, sink);
+                } else {
+                    system.completeAndRate(freelancer, random.nextInt(6), sink);
+                }
+                sink.reset();
+            }
+            long start = System.nanoTime();
+            system.simulateMonth(sink);
+            long elapsed = System.nanoTime() - start;
+            sink.reset();
+            // The first months warm up the JIT
+            if (month >= months / 5) {
+                monthNanos += elapsed;
+                worst = Math.max(worst, elapsed);
+            }
+        }
+        int measured = months - months / 5;
+        System.out.printf("%d freelancers, %d customers, %d jobs/month: "
+                + "simulateMonth avg %.1f us, max %.1f us%n",
+                freelancerCount, customerCount, jobsPerMonth, monthNanos / 1e3 / measured, worst / 1e3);
+    }
+}
@@ -0,0 +1,478 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Microbenchmarks for the hot paths: CustomHashMap and OpenHashMap put/get/fill
+ * (with its rehashes), MaxHeap insert/remove/updateFreelancer/getTopEligibleFreelancers,
+ * and every GigMatchSystem operation, each at several population sizes and, where
+ * it matters, blacklist sizes.
+ *
+ * Measurement follows JMH's average-time mode: every benchmark and parameter
+ * combination gets a fresh state, warmup iterations, then timed iterations of a
+ * fixed duration; the result is ns per operation with its spread over the timed
+ * iterations. Benchmarks that do several operations per call report per
+ * operation (like @OperationsPerInvocation), and results are folded into a sink
+ * printed at the end so the JIT cannot drop the work. State-changing operations
+ * are paired with their inverse (employ + complete, blacklist + unblacklist) to
+ * keep the population steady; registrations grow it by the operations run.
+ *
+ * Usage (from the repository root; 10M needs a large heap):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx8g -cp out OperationBenchmarks [-p sizes] [-b blacklistSizes] [-wi n] [-i n] [-t ms] [filter]
+ * e.g. java -cp out OperationBenchmarks -p 1000,100000,1000000,10000000 -b 0,100 MaxHeap
+ * Sizes default to 1000,100000,1000000 and blacklist sizes to 0,1000; the
+ * filter is a regex matched against benchmark names.
+ */
+public class OperationBenchmarks {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    // Keeps benchmark results observable
+    private static long sink;
+
+    /**
+     * One benchmark: setUp builds the state for a population (and blacklist) size,
+     * run performs one call.
+     */
+    private abstract static class Benchmark {
+        final String name;
+        final boolean usesBlacklist;
+
+        // Operations performed by one call of run
+        int opsPerCall = 1;
+
+        Benchmark(String name, boolean usesBlacklist) {
+            this.name = name;
+            this.usesBlacklist = usesBlacklist;
+        }
+
+        abstract void setUp(int population, int blacklist);
+
+        abstract long run(int i);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1000, 100_000, 1_000_000};
+        int[] blacklists = {0, 1000};
+        int warmups = 3;
+        int iterations = 5;
+        long iterationMs = 300;
+        Pattern filter = Pattern.compile(".*");
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-p": sizes = parseInts(args[++a]); break;
+                case "-b": blacklists = parseInts(args[++a]); break;
+                case "-wi": warmups = Integer.parseInt(args[++a]); break;
+                case "-i": iterations = Integer.parseInt(args[++a]); break;
+                case "-t": iterationMs = Long.parseLong(args[++a]); break;
+                default: filter = Pattern.compile(".*(" + args[a] + ").*");
+            }
+        }
+
+        System.out.printf("%-36s %10s %9s %14s %10s%n",
+                "benchmark", "population", "blacklist", "ns/op", "error");
+        for (Benchmark benchmark : benchmarks()) {
+            if (!filter.matcher(benchmark.name).matches()) continue;
+            for (int population : sizes) {
+                int[] blacklistSizes = benchmark.usesBlacklist ? blacklists : new int[]{0};
+                for (int blacklist : blacklistSizes) {
+                    if (blacklist > population) continue;
+                    benchmark.setUp(population, blacklist);
+                    measure(benchmark, population, blacklist, warmups, iterations, iterationMs);
+                }
+            }
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void measure(Benchmark benchmark, int population, int blacklist,
+                                int warmups, int iterations, long iterationMs) {
+        int call = 0;
+        double[] results = new double[iterations];
+        for (int it = -warmups; it < iterations; it++) {
+            long deadline = System.nanoTime() + iterationMs * 1_000_000;
+            long start = System.nanoTime();
+            long calls = 0;
+            long now;
+            do {
+                sink += benchmark.run(call++);
+                calls++;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (it >= 0) {
+                results[it] = (double) (now - start) / (calls * benchmark.opsPerCall);
+            }
+        }
+        double mean = 0;
+        for (double r : results) mean += r;
+        mean /= iterations;
+        double variance = 0;
+        for (double r : results) variance += (r - mean) * (r - mean);
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        System.out.printf("%-36s %10d %9d %14.1f %10.1f%n",
+                benchmark.name, population, blacklist, mean, error);
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static ArrayList<Benchmark> benchmarks() {
+        ArrayList<Benchmark> list = new ArrayList<>();
+        addMapBenchmarks(list);
+        addHeapBenchmarks(list);
+        addSystemBenchmarks(list);
+        return list;
+    }
+
+    private static String[] keys(int count, String prefix) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+
+    // ---- Maps ----
+
+    private static void addMapBenchmarks(ArrayList<Benchmark> list) {
+        list.add(new Benchmark("CustomHashMap.get", false) {
+            CustomHashMap<String, Integer> map;
+            String[] keys;
+            void setUp(int population, int blacklist) {
+                keys = keys(population, "k");
+                map = new CustomHashMap<>();
+                for (int i = 0; i < population; i++) map.put(keys[i], i);
+            }
+            long run(int i) {
+                return map.get(keys[i % keys.length]);
+            }
+        });
+        list.add(new Benchmark("CustomHashMap.put (existing key)", false) {
+            CustomHashMap<String, Integer> map;
+            String[] keys;
+            void setUp(int population, int blacklist) {
+                keys = keys(population, "k");
+                map = new CustomHashMap<>();
+                for (int i = 0; i < population; i++) map.put(keys[i], i);
+            }
+            long run(int i) {
+                map.put(keys[i % keys.length], i);
+                return i;
+            }
+        });
+        list.add(new Benchmark("CustomHashMap.put (fill, rehashing)", false) {
+            String[] keys;
+            void setUp(int population, int blacklist) {
+                keys = keys(population, "k");
+                opsPerCall = population;
+            }
+            long run(int i) {
+                CustomHashMap<String, Integer> map = new CustomHashMap<>();
+                for (int k = 0; k < keys.length; k++) map.put(keys[k], k);
+                return map.get(keys[0]);
+            }
+        });
+        list.add(new Benchmark("OpenHashMap.get", false) {
+            OpenHashMap<String, Integer> map;
+            String[] keys;
+            void setUp(int population, int blacklist) {
+                keys = keys(population, "k");
+                map = new OpenHashMap<>(true);
+                for (int i = 0; i < population; i++) map.put(keys[i], i);
+            }
+            long run(int i) {
+                return map.get(keys[i % keys.length]);
+            }
+        });
+        list.add(new Benchmark("OpenHashMap.put (fill, rehashing)", false) {
+            String[] keys;
+            void setUp(int population, int blacklist) {
+                keys = keys(population, "k");
+                opsPerCall = population;
+            }
+            long run(int i) {
+                OpenHashMap<String, Integer> map = new OpenHashMap<>(true);
+                for (int k = 0; k < keys.length; k++) map.put(keys[k], k);
+                return map.size();
+            }
+        });
+    }
+
+    // ---- MaxHeap ----
+
+    /**
+     * A heap of population freelancers of one service, registered so ID ranks exist.
+     */
+    private static class HeapState {
+        final Freelancer[] freelancers;
+        final IdRegistry<Freelancer> ids = new IdRegistry<>(true);
+        final MaxHeap heap;
+        final Random random = new Random(42);
+
+        HeapState(int population) {
+            FreelancerStore store = new FreelancerStore(population);
+            heap = new MaxHeap(new int[]{95, 75, 85, 80, 90}, ids);
+            freelancers = new Freelancer[population];
+            for (int i = 0; i < population; i++) {
+                Freelancer f = new Freelancer(store, "f" + i, "web_dev", 100,
+                        random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                        random.nextInt(101), random.nextInt(101));
+                f.handle = ids.register(f.id, f);
+                f.setAverageRating(random.nextInt(51) / 10.0);
+                freelancers[i] = f;
+                heap.insert(f);
+            }
+        }
+
+        Freelancer pick() {
+            return freelancers[random.nextInt(freelancers.length)];
+        }
+    }
+
+    private static void addHeapBenchmarks(ArrayList<Benchmark> list) {
+        list.add(new Benchmark("MaxHeap.insert (fill)", false) {
+            HeapState state;
+            void setUp(int population, int blacklist) {
+                state = new HeapState(population);
+                opsPerCall = population;
+            }
+            long run(int i) {
+                MaxHeap heap = new MaxHeap(new int[]{95, 75, 85, 80, 90}, state.ids);
+                // Each insert computes the composite score, then sifts up
+                for (Freelancer f : state.freelancers) heap.insert(f);
+                return heap.size();
+            }
+        });
+        list.add(new Benchmark("MaxHeap.remove + insert", false) {
+            HeapState state;
+            void setUp(int population, int blacklist) {
+                state = new HeapState(population);
+            }
+            long run(int i) {
+                Freelancer f = state.pick();
+                state.heap.remove(f);
+                state.heap.insert(f);
+                return f.heapIndex;
+            }
+        });
+        list.add(new Benchmark("MaxHeap.updateFreelancer", false) {
+            HeapState state;
+            void setUp(int population, int blacklist) {
+                state = new HeapState(population);
+            }
+            long run(int i) {
+                Freelancer f = state.pick();
+                f.setAverageRating((i % 51) / 10.0);
+                state.heap.updateFreelancer(f);
+                return f.heapIndex;
+            }
+        });
+        list.add(new Benchmark("MaxHeap.getTopEligibleFreelancers k=10", true) {
+            HeapState state;
+            Customer customer;
+            void setUp(int population, int blacklist) {
+                state = new HeapState(population);
+                // Blacklist the best freelancers, so the walk has to skip all of them
+                customer = new Customer("c0");
+                for (Freelancer f : state.heap.getTopEligibleFreelancers(blacklist, customer)) {
+                    customer.addToBlacklist(f.handle);
+                }
+            }
+            long run(int i) {
+                return state.heap.getTopEligibleFreelancers(10, customer).size();
+            }
+        });
+    }
+
+    // ---- GigMatchSystem ----
+
+    /**
+     * A system with population freelancers ("f0".."f{n-1}", handle i = "f" + i)
+     * and population / 10 customers (at least 100).
+     */
+    private abstract static class SystemBenchmark extends Benchmark {
+        GigMatchSystem system;
+        String[] freelancerIds;
+        String[] customerIds;
+        final OutputSink out = new OutputSink();
+        final Random random = new Random(42);
+
+        SystemBenchmark(String name, boolean usesBlacklist) {
+            super(name, usesBlacklist);
+        }
+
+        void setUp(int population, int blacklist) {
+            system = new GigMatchSystem();
+            freelancerIds = keys(population, "f");
+            customerIds = keys(Math.max(100, population / 10), "c");
+            for (String id : freelancerIds) {
+                system.registerFreelancer(id, SERVICES[random.nextInt(SERVICES.length)],
+                        1 + random.nextInt(500), random.nextInt(101), random.nextInt(101),
+                        random.nextInt(101), random.nextInt(101), random.nextInt(101), out);
+                out.reset();
+            }
+            for (String id : customerIds) {
+                system.registerCustomer(id, out);
+                out.reset();
+            }
+        }
+
+        String freelancer() {
+            return freelancerIds[random.nextInt(freelancerIds.length)];
+        }
+
+        String customer() {
+            return customerIds[random.nextInt(customerIds.length)];
+        }
+
+        /**
+         * Length of the response, which also clears the sink for the next call.
+         */
+        long done() {
+            long length = out.length();
+            out.reset();
+            return length;
+        }
+    }
+
+    private static void addSystemBenchmarks(ArrayList<Benchmark> list) {
+        list.add(new SystemBenchmark("System.registerCustomer", false) {
+            long run(int i) {
+                system.registerCustomer("new" + i, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.registerFreelancer", false) {
+            long run(int i) {
+                system.registerFreelancer("new" + i, SERVICES[i % SERVICES.length], 100,
+                        50, 60, 70, 80, 90, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.registerFreelancers (1000 rows)", false) {
+            final String[] ids = new String[1000];
+            final String[] services = new String[1000];
+            final int[] values = new int[6000];
+            void setUp(int population, int blacklist) {
+                super.setUp(population, blacklist);
+                opsPerCall = 1000;
+                for (int k = 0; k < 6000; k++) values[k] = 1 + random.nextInt(100);
+            }
+            long run(int i) {
+                for (int k = 0; k < 1000; k++) {
+                    ids[k] = "new" + i + "_" + k;
+                    services[k] = SERVICES[k % SERVICES.length];
+                }
+                system.registerFreelancers(ids, services, values, 1000, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.requestJob k=5 + complete", true) {
+            String requester;
+            void setUp(int population, int blacklist) {
+                super.setUp(population, blacklist);
+                // The requesting customer blacklists random freelancers
+                requester = customerIds[0];
+                for (int k = 0; k < blacklist; k++) {
+                    system.blacklist(requester, freelancer(), out);
+                    out.reset();
+                }
+            }
+            long run(int i) {
+                system.requestJob(requester, SERVICES[i % SERVICES.length], 5, out);
+                Customer c = system.findCustomer(requester);
+                if (c.employmentCount > 0) {
+                    system.completeAndRate(freelancerIds[c.currentEmployments[0]], 5, out);
+                }
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.employ + completeAndRate", false) {
+            long run(int i) {
+                String f = freelancer();
+                system.employ(customer(), f, out);
+                system.completeAndRate(f, i % 6, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.employ + cancelByFreelancer", false) {
+            long run(int i) {
+                String f = freelancer();
+                system.employ(customer(), f, out);
+                system.cancelByFreelancer(f, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.employ + cancelByCustomer", false) {
+            long run(int i) {
+                String f = freelancer();
+                String c = customer();
+                system.employ(c, f, out);
+                system.cancelByCustomer(c, f, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.blacklist + unblacklist", true) {
+            void setUp(int population, int blacklist) {
+                super.setUp(population, blacklist);
+                // Every customer starts with blacklist entries, so set lookups see that size
+                for (String c : customerIds) {
+                    for (int k = 0; k < blacklist; k++) {
+                        system.blacklist(c, freelancer(), out);
+                        out.reset();
+                    }
+                    if (blacklist > 0 && customerIds.length > 1000) break;
+                }
+            }
+            long run(int i) {
+                String c = customerIds[0];
+                String f = freelancer();
+                system.blacklist(c, f, out);
+                system.unblacklist(c, f, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.changeService", false) {
+            long run(int i) {
+                system.changeService(freelancer(), SERVICES[i % SERVICES.length], 100, out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.simulateMonth (20 jobs)", false) {
+            long run(int i) {
+                for (int k = 0; k < 20; k++) {
+                    String f = freelancer();
+                    system.employ(customer(), f, out);
+                    system.completeAndRate(f, 5, out);
+                }
+                system.simulateMonth(out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.queryFreelancer", false) {
+            long run(int i) {
+                system.queryFreelancer(freelancer(), out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.queryCustomer", false) {
+            long run(int i) {
+                system.queryCustomer(customer(), out);
+                return done();
+            }
+        });
+        list.add(new SystemBenchmark("System.updateSkill", false) {
+            long run(int i) {
+                system.updateSkill(freelancer(), i % 101, 50, 60, 70, (i * 7) % 101, out);
+                return done();
+            }
+        });
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the original String.format query responses with QueryFormatter
+ * writing into a reused OutputSink, after checking that both produce the
+ * same bytes for every generated freelancer and customer.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out QueryFormatBenchmark [entityCount]
+ */
+public class QueryFormatBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        Random random = new Random(42);
+        String[] services = {"paint", "web_dev", "tutoring", "plumbing"};
+        FreelancerStore store = new FreelancerStore(count);
+        Freelancer[] freelancers = new Freelancer[count];
+        Customer[] customers = new Customer[count];
+        for (int i = 0; i < count; i++) {
+            Freelancer f = new Freelancer(store, "freelancer" + i, services[i % services.length],
+                    1 + random.nextInt(500), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101), random.nextInt(101));
+            // Replay a few ratings through the rating formula so averages have long expansions
+            double avg = 5.0;
+            int jobs = random.nextInt(40);
+            for (int n = 0; n < jobs; n++) {
+                avg = (avg * (n + 1) + random.nextInt(6)) / (n + 2);
+            }
+            f.setAverageRating(avg);
+            f.setCompletedJobs(jobs);
+            f.setCancelledJobs(random.nextInt(5));
+            f.setAvailable(random.nextBoolean());
+            f.setBurnout(random.nextInt(4) == 0);
+            freelancers[i] = f;
+
+            Customer c = new Customer("customer" + i);
+            c.totalSpent = random.nextInt(10000);
+            c.totalEmployments = random.nextInt(100);
+            c.updateLoyaltyTier();
+            for (int b = random.nextInt(4); b > 0; b--) {
+                c.addToBlacklist(random.nextInt(count));
+            }
+            customers[i] = c;
+        }
+
+        OutputSink sink = new OutputSink();
+        for (int i = 0; i < count; i++) {
+            sink.reset();
+            QueryFormatter.appendFreelancer(sink, freelancers[i]);
+            check(sink, formatFreelancer(freelancers[i]));
+            sink.reset();
+            QueryFormatter.appendCustomer(sink, customers[i]);
+            check(sink, formatCustomer(customers[i]));
+        }
+        System.out.println("outputs identical for " + count + " freelancers and customers");
+
+        System.out.println("path\tns/query");
+        long blackhole = 0;
+        long formatTotal = 0;
+        long sinkTotal = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                blackhole += formatFreelancer(freelancers[i]).length();
+                blackhole += formatCustomer(customers[i]).length();
+            }
+            long formatNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink.reset();
+                QueryFormatter.appendFreelancer(sink, freelancers[i]);
+                blackhole += sink.length();
+                sink.reset();
+                QueryFormatter.appendCustomer(sink, customers[i]);
+                blackhole += sink.length();
+            }
+            long sinkNanos = System.nanoTime() - start;
+
+            if (round >= WARMUP_ROUNDS) {
+                formatTotal += formatNanos;
+                sinkTotal += sinkNanos;
+            }
+        }
+        long queries = 2L * count * MEASURED_ROUNDS;
+        System.out.println("String.format\t" + formatTotal / queries);
+        System.out.println("QueryFormatter\t" + sinkTotal / queries);
+        if (blackhole == 42) System.out.println();
+    }
+
+    // The response formats used before QueryFormatter
+    private static String formatFreelancer(Freelancer f) {
+        return String.format("%s: %s, price: %d, rating: %.1f, completed: %d, cancelled: %d, " +
+                        "skills: (%d,%d,%d,%d,%d), available: %s, burnout: %s",
+                f.id, f.service, f.getPrice(), f.getAverageRating(),
+                f.getCompletedJobs(), f.getCancelledJobs(),
+                f.getSkill(0), f.getSkill(1), f.getSkill(2), f.getSkill(3), f.getSkill(4),
+                f.isAvailable() ? "yes" : "no",
+                f.isBurnout() ? "yes" : "no");
+    }
+
+    private static String formatCustomer(Customer c) {
+        return String.format("%s: total spent: $%d, loyalty tier: %s, blacklisted freelancer count: %d, " +
+                        "total employment count: %d",
+                c.id, c.totalSpent, c.getLoyaltyTier(),
+                c.getBlacklistCount(), c.totalEmployments);
+    }
+
+    private static void check(OutputSink sink, String expected) {
+        String actual = sink.toString();
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException("mismatch:\n  expected " + expected + "\n  actual   " + actual);
+        }
+    }
+}
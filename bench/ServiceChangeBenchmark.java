@@ -0,0 +1,89 @@
+import java.util.Random;
+
+/**
+ * Measures the month-end cost of a mass service change (e.g. a campaign moving
+ * a large share of freelancers to other services), applying the moves one at a
+ * time versus rebuilding the affected heaps (GigMatchSystem.setBulkRebuild).
+ * Both systems get the same operations; the last month is reported and their
+ * rankings are compared afterwards.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx3g -cp out ServiceChangeBenchmark [freelancers] [percentMoving] [months]
+ */
+public class ServiceChangeBenchmark {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int percentMoving = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int months = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        GigMatchSystem serial = build(count, false);
+        GigMatchSystem bulk = build(count, true);
+        OutputSink sink = new OutputSink();
+
+        // Queue the same moves on both systems, month after month; the first months warm up the JIT
+        Random random = new Random(7);
+        int moving = 0;
+        long serialNs = 0;
+        long bulkNs = 0;
+        for (int month = 0; month < months; month++) {
+            moving = 0;
+            for (int i = 0; i < count; i++) {
+                if (random.nextInt(100) < percentMoving) {
+                    String service = SERVICES[random.nextInt(SERVICES.length)];
+                    int price = 1 + random.nextInt(500);
+                    serial.changeService("f" + i, service, price, sink);
+                    bulk.changeService("f" + i, service, price, sink);
+                    sink.reset();
+                    moving++;
+                }
+            }
+            serialNs = timeMonth(serial, sink);
+            bulkNs = timeMonth(bulk, sink);
+        }
+        System.out.printf("%d freelancers, %d moving: one at a time %d ms, bulk rebuild %d ms%n",
+                count, moving, serialNs / 1_000_000, bulkNs / 1_000_000);
+
+        // Same candidates in the same order for every service
+        for (int round = 0; round < 3; round++) {
+            for (String service : SERVICES) {
+                String customer = "c" + random.nextInt(1000);
+                String expected = serial.requestJob(customer, service, 50);
+                if (!bulk.requestJob(customer, service, 50).equals(expected)) {
+                    throw new IllegalStateException("rankings differ for " + service);
+                }
+            }
+        }
+        System.out.println("rankings match");
+    }
+
+    private static GigMatchSystem build(int count, boolean bulkRebuild) {
+        Random random = new Random(42);
+        GigMatchSystem system = new GigMatchSystem();
+        system.setBulkRebuild(bulkRebuild);
+        OutputSink sink = new OutputSink();
+        for (int i = 0; i < count; i++) {
+            system.registerFreelancer("f" + i, SERVICES[random.nextInt(SERVICES.length)],
+                    1 + random.nextInt(500), random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101), sink);
+            sink.reset();
+        }
+        for (int i = 0; i < 1000; i++) {
+            system.registerCustomer("c" + i, sink);
+            system.requestJob("c" + i, SERVICES[i % SERVICES.length], 1, sink);
+            sink.reset();
+        }
+        return system;
+    }
+
+    private static long timeMonth(GigMatchSystem system, OutputSink sink) {
+        long start = System.nanoTime();
+        system.simulateMonth(sink);
+        long elapsed = System.nanoTime() - start;
+        sink.reset();
+        return elapsed;
+    }
+}
@@ -0,0 +1,79 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Measures snapshot write and restore time for a system with many freelancers,
+ * and checks that the restored system answers queries like the original.
+ *
+ * Usage (from the repository root; 10M freelancers need a large heap):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Xmx4g -cp out SnapshotBenchmark [freelancerCount] [snapshotFile]
+ */
+public class SnapshotBenchmark {
+    private static final String[] SERVICES = {"paint", "web_dev", "graphic_design", "data_entry", "tutoring",
+            "cleaning", "writing", "photography", "plumbing", "electrical"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path file = Paths.get(args.length > 1 ? args[1] : "gigmatch-snapshot.bin");
+        int customerCount = Math.max(1, count / 10);
+
+        Random random = new Random(42);
+        GigMatchSystem system = new GigMatchSystem();
+        OutputSink sink = new OutputSink();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            system.registerFreelancer("f" + i, SERVICES[random.nextInt(SERVICES.length)],
+                    1 + random.nextInt(500), random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101), sink);
+            sink.reset();
+        }
+        for (int i = 0; i < customerCount; i++) {
+            system.registerCustomer("c" + i, sink);
+            sink.reset();
+        }
+        // Some employments, ratings and blacklists so every section has content
+        for (int i = 0; i < customerCount; i += 10) {
+            String customer = "c" + i;
+            system.blacklist(customer, "f" + random.nextInt(count), sink);
+            system.requestJob(customer, SERVICES[random.nextInt(SERVICES.length)], 1, sink);
+            sink.reset();
+        }
+        System.out.printf("built %d freelancers, %d customers in %d ms%n",
+                count, customerCount, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        system.writeSnapshot(file);
+        long writeMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("snapshot written: %d MB in %d ms%n", Files.size(file) >> 20, writeMs);
+
+        // Let the original go before restoring so both do not have to fit in the heap
+        String[] probes = new String[1000];
+        String[] expected = new String[probes.length];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = "f" + random.nextInt(count);
+            expected[i] = system.queryFreelancer(probes[i]);
+        }
+        String expectedJob = system.requestJob("c1", "web_dev", 5);
+        system = null;
+        System.gc();
+
+        start = System.nanoTime();
+        GigMatchSystem restored = GigMatchSystem.readSnapshot(file);
+        long restoreMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("snapshot restored in %d ms%n", restoreMs);
+
+        for (int i = 0; i < probes.length; i++) {
+            if (!restored.queryFreelancer(probes[i]).equals(expected[i])) {
+                throw new IllegalStateException("restored state differs for " + probes[i]);
+            }
+        }
+        if (!restored.requestJob("c1", "web_dev", 5).equals(expectedJob)) {
+            throw new IllegalStateException("restored ranking differs");
+        }
+        System.out.println("restored state matches");
+        Files.delete(file);
+    }
+}
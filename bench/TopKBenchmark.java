@@ -0,0 +1,54 @@
+import java.util.Random;
+
+/**
+ * Measures MaxHeap.getTopEligibleFreelancers latency as the number of
+ * requested candidates grows.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out TopKBenchmark [heapSize]
+ */
+public class TopKBenchmark {
+    private static final int[] K_VALUES = {1, 5, 10, 50, 100, 500, 1000, 5000};
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int MEASURED_ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        int heapSize = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        Random random = new Random(42);
+        IdRegistry<Freelancer> freelancerIds = new IdRegistry<>(true);
+        FreelancerStore store = new FreelancerStore(heapSize);
+        MaxHeap heap = new MaxHeap(new int[]{95, 75, 85, 80, 90}, freelancerIds);
+        for (int i = 0; i < heapSize; i++) {
+            Freelancer f = new Freelancer(store, "f" + i, "web_dev", 100,
+                    random.nextInt(101), random.nextInt(101), random.nextInt(101),
+                    random.nextInt(101), random.nextInt(101));
+            f.handle = freelancerIds.register(f.id, f);
+            f.setAverageRating(random.nextInt(51) / 10.0);
+            heap.insert(f);
+        }
+
+        // Blacklist a few freelancers so the walk has to skip some nodes
+        Customer customer = new Customer("c0");
+        for (int i = 0; i < 50; i++) {
+            customer.addToBlacklist(random.nextInt(heapSize));
+        }
+
+        System.out.println("heap size: " + heapSize);
+        System.out.println("k\tns/op");
+        long sink = 0;
+        for (int k : K_VALUES) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                sink += heap.getTopEligibleFreelancers(k, customer).size();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                sink += heap.getTopEligibleFreelancers(k, customer).size();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println(k + "\t" + (elapsed / MEASURED_ROUNDS));
+        }
+        if (sink == 42) System.out.println();
+    }
+}
@@ -0,0 +1,519 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Seeded generator of production-like command traces in the Main input format.
+ *
+ * The trace starts with a setup phase (registering the population and filling
+ * the initial blacklists), followed by the requested number of commands drawn
+ * from a weighted operation mix, with simulate_month every few commands.
+ * Services are picked with Zipfian popularity (the first service in the list
+ * is the most popular), both for registrations and for jobs.
+ *
+ * Every generated command is also run against an embedded GigMatchSystem, so
+ * the generator knows who is employed by whom: completions and cancellations
+ * target real employments and blacklist removals real entries, except for the
+ * --errors fraction, which targets random freelancers and exercises the error
+ * paths. The same seed and options always produce the same trace.
+ *
+ * Usage (from the repository root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out WorkloadGenerator [--option=value ...] > trace.txt
+ * Options (defaults in brackets):
+ *   --seed            random seed [1]
+ *   --commands        commands after the setup phase [1000000]
+ *   --freelancers     freelancers registered in the setup phase [10000]
+ *   --customers       customers registered in the setup phase [5000]
+ *   --mix             operation weights, e.g. request_job=30,complete_and_rate=25 [see DEFAULT_MIX]
+ *   --zipf            Zipf exponent of service popularity, 0 for uniform [1.0]
+ *   --blacklist       mean initial blacklist entries per customer [2]
+ *   --month-every     commands between simulate_month lines, 0 for none [10000]
+ *   --errors          fraction of employment commands aimed at random freelancers [0.02]
+ *   --out             output file [standard output]
+ * e.g. java -cp out WorkloadGenerator --commands=100000000 --freelancers=1000000 \
+ *        --customers=500000 --out=load.txt
+ */
+public class WorkloadGenerator {
+    private static final String[] SERVICES = {"web_dev", "graphic_design", "writing", "data_entry",
+            "tutoring", "photography", "cleaning", "paint", "plumbing", "electrical"};
+
+    private static final String DEFAULT_MIX = "request_job=30,employ_freelancer=4,complete_and_rate=28,"
+            + "cancel_by_freelancer=2,cancel_by_customer=2,blacklist=2,unblacklist=1,change_service=1,"
+            + "update_skill=4,query_freelancer=12,query_customer=12,register_customer=1,"
+            + "register_freelancer=1";
+
+    // Operations the mix can choose from (simulate_month follows its own cadence)
+    private static final int[] MIX_OPS = {
+            CommandParser.OP_REQUEST_JOB, CommandParser.OP_EMPLOY_FREELANCER,
+            CommandParser.OP_COMPLETE_AND_RATE, CommandParser.OP_CANCEL_BY_FREELANCER,
+            CommandParser.OP_CANCEL_BY_CUSTOMER, CommandParser.OP_BLACKLIST, CommandParser.OP_UNBLACKLIST,
+            CommandParser.OP_CHANGE_SERVICE, CommandParser.OP_UPDATE_SKILL, CommandParser.OP_QUERY_FREELANCER,
+            CommandParser.OP_QUERY_CUSTOMER, CommandParser.OP_REGISTER_CUSTOMER,
+            CommandParser.OP_REGISTER_FREELANCER
+    };
+
+    private final Random random;
+    private final double errors;
+    private final double[] serviceCumulative;
+    private final Writer out;
+
+    private final GigMatchSystem system = new GigMatchSystem();
+    private final OutputSink sink = new OutputSink();
+    private final StringBuilder line = new StringBuilder(96);
+
+    // Freelancer "f<n>" has handle n and customer "c<n>" handle n, since every registration succeeds
+    private Freelancer[] freelancers = new Freelancer[1024];
+    private int freelancerCount;
+    private Customer[] customers = new Customer[1024];
+    private int customerCount;
+
+    // Freelancers of each service at registration (a popularity-weighted pool, not kept exact)
+    private final int[][] serviceMembers = new int[SERVICES.length][16];
+    private final int[] serviceMemberCount = new int[SERVICES.length];
+
+    // Employed freelancer handles, with each one's position for O(1) removal (-1 if not employed)
+    private int[] employed = new int[1024];
+    private int employedCount;
+    private int[] employedPosition = new int[1024];
+
+    // Blacklist entries as (customer << 32 | freelancer) with the same removal scheme
+    private long[] blacklisted = new long[1024];
+    private int blacklistedCount;
+    private final OpenHashMap<Long, Integer> blacklistedPosition = new OpenHashMap<>();
+
+    // Lines written per opcode
+    private final long[] written = new long[CommandParser.OPERATION_NAMES.length];
+
+    private WorkloadGenerator(long seed, double zipf, double errors, Writer out) {
+        this.random = new Random(seed);
+        this.errors = errors;
+        this.out = out;
+        serviceCumulative = new double[SERVICES.length];
+        double total = 0;
+        for (int s = 0; s < SERVICES.length; s++) {
+            total += 1.0 / Math.pow(s + 1, zipf);
+            serviceCumulative[s] = total;
+        }
+        for (int s = 0; s < SERVICES.length; s++) {
+            serviceCumulative[s] /= total;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Locale.setDefault(Locale.US);
+        long seed = 1;
+        long commands = 1_000_000;
+        int freelancerTarget = 10_000;
+        int customerTarget = 5_000;
+        String mix = DEFAULT_MIX;
+        double zipf = 1.0;
+        double blacklistDensity = 2;
+        long monthEvery = 10_000;
+        double errors = 0.02;
+        String outFile = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(1);
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "seed": seed = Long.parseLong(value); break;
+                case "commands": commands = Long.parseLong(value); break;
+                case "freelancers": freelancerTarget = Integer.parseInt(value); break;
+                case "customers": customerTarget = Integer.parseInt(value); break;
+                case "mix": mix = value; break;
+                case "zipf": zipf = Double.parseDouble(value); break;
+                case "blacklist": blacklistDensity = Double.parseDouble(value); break;
+                case "month-every": monthEvery = Long.parseLong(value); break;
+                case "errors": errors = Double.parseDouble(value); break;
+                case "out": outFile = value; break;
+                default:
+                    System.err.println("Unknown option: " + arg);
+                    System.exit(1);
+            }
+        }
+        if (freelancerTarget < 1 || customerTarget < 1) {
+            System.err.println("Need at least one freelancer and one customer");
+            System.exit(1);
+        }
+        double[] mixCumulative = parseMix(mix);
+
+        OutputStream stream = outFile != null ? new FileOutputStream(outFile) : System.out;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII),
+                1 << 16)) {
+            WorkloadGenerator generator = new WorkloadGenerator(seed, zipf, errors, writer);
+            long start = System.nanoTime();
+            generator.setUp(freelancerTarget, customerTarget, blacklistDensity);
+            for (long i = 1; i <= commands; i++) {
+                if (monthEvery > 0 && i % monthEvery == 0) {
+                    generator.simulateMonth();
+                } else {
+                    generator.next(mixCumulative);
+                }
+                if (i % 10_000_000 == 0) {
+                    System.err.printf("%d commands (%.0f s)%n", i, (System.nanoTime() - start) / 1e9);
+                }
+            }
+            generator.report();
+        }
+    }
+
+    /**
+     * Turn "op=weight,..." into cumulative probabilities indexed like MIX_OPS.
+     */
+    private static double[] parseMix(String mix) {
+        double[] weights = new double[MIX_OPS.length];
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            int index = -1;
+            for (int k = 0; k < MIX_OPS.length; k++) {
+                if (CommandParser.OPERATION_NAMES[MIX_OPS[k]].equals(pair[0])) index = k;
+            }
+            if (index < 0 || pair.length != 2) {
+                System.err.println("Bad mix entry: " + part);
+                System.exit(1);
+            }
+            weights[index] = Double.parseDouble(pair[1]);
+        }
+        double total = 0;
+        for (int k = 0; k < weights.length; k++) {
+            total += weights[k];
+            weights[k] = total;
+        }
+        if (total <= 0) {
+            System.err.println("Mix has no positive weight");
+            System.exit(1);
+        }
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] /= total;
+        }
+        return weights;
+    }
+
+    /**
+     * Register the population, then give customers their initial blacklists.
+     */
+    private void setUp(int freelancerTarget, int customerTarget, double blacklistDensity) throws IOException {
+        for (int i = 0; i < freelancerTarget; i++) {
+            registerFreelancer();
+        }
+        for (int i = 0; i < customerTarget; i++) {
+            registerCustomer();
+        }
+        for (int c = 0; c < customerTarget; c++) {
+            int entries = (int) (random.nextDouble() * 2 * blacklistDensity + 0.5);
+            for (int k = 0; k < entries; k++) {
+                blacklist(c);
+            }
+        }
+    }
+
+    private void next(double[] mixCumulative) throws IOException {
+        double roll = random.nextDouble();
+        int k = 0;
+        while (k < MIX_OPS.length - 1 && roll >= mixCumulative[k]) k++;
+        switch (MIX_OPS[k]) {
+            case CommandParser.OP_REQUEST_JOB: requestJob(); break;
+            case CommandParser.OP_EMPLOY_FREELANCER: employ(); break;
+            case CommandParser.OP_COMPLETE_AND_RATE: completeAndRate(); break;
+            case CommandParser.OP_CANCEL_BY_FREELANCER: cancelByFreelancer(); break;
+            case CommandParser.OP_CANCEL_BY_CUSTOMER: cancelByCustomer(); break;
+            case CommandParser.OP_BLACKLIST: blacklist(random.nextInt(customerCount)); break;
+            case CommandParser.OP_UNBLACKLIST: unblacklist(); break;
+            case CommandParser.OP_CHANGE_SERVICE: changeService(); break;
+            case CommandParser.OP_UPDATE_SKILL: updateSkill(); break;
+            case CommandParser.OP_QUERY_FREELANCER: queryFreelancer(); break;
+            case CommandParser.OP_QUERY_CUSTOMER: queryCustomer(); break;
+            case CommandParser.OP_REGISTER_CUSTOMER: registerCustomer(); break;
+            default: registerFreelancer(); break;
+        }
+    }
+
+    // ---- Operations: each writes its line and runs it on the embedded system ----
+
+    private void registerFreelancer() throws IOException {
+        int handle = freelancerCount;
+        String id = "f" + handle;
+        int service = service();
+        int price = 20 + random.nextInt(481);
+        int[] skills = skills();
+        begin(CommandParser.OP_REGISTER_FREELANCER).append(id).append(' ').append(SERVICES[service])
+                .append(' ').append(price);
+        for (int s : skills) line.append(' ').append(s);
+        emit();
+        system.registerFreelancer(id, SERVICES[service], price, skills[0], skills[1], skills[2], skills[3],
+                skills[4], sink);
+        sink.reset();
+
+        if (handle == freelancers.length) {
+            freelancers = Arrays.copyOf(freelancers, handle * 2);
+            employedPosition = Arrays.copyOf(employedPosition, handle * 2);
+        }
+        freelancers[handle] = system.findFreelancer(id);
+        employedPosition[handle] = -1;
+        freelancerCount++;
+        if (serviceMemberCount[service] == serviceMembers[service].length) {
+            serviceMembers[service] = Arrays.copyOf(serviceMembers[service], serviceMemberCount[service] * 2);
+        }
+        serviceMembers[service][serviceMemberCount[service]++] = handle;
+    }
+
+    private void registerCustomer() throws IOException {
+        int handle = customerCount;
+        String id = "c" + handle;
+        begin(CommandParser.OP_REGISTER_CUSTOMER).append(id);
+        emit();
+        system.registerCustomer(id, sink);
+        sink.reset();
+        if (handle == customers.length) {
+            customers = Arrays.copyOf(customers, handle * 2);
+        }
+        customers[handle] = system.findCustomer(id);
+        customerCount++;
+    }
+
+    private void requestJob() throws IOException {
+        Customer customer = customers[random.nextInt(customerCount)];
+        String service = SERVICES[service()];
+        int k = 1 + random.nextInt(5);
+        begin(CommandParser.OP_REQUEST_JOB).append(customer.id).append(' ').append(service)
+                .append(' ').append(k);
+        emit();
+        int before = customer.employmentCount;
+        system.requestJob(customer.id, service, k, sink);
+        sink.reset();
+        if (customer.employmentCount > before) {
+            syncEmployment(customer.currentEmployments[customer.employmentCount - 1]);
+        }
+    }
+
+    private void employ() throws IOException {
+        Customer customer = customers[random.nextInt(customerCount)];
+        // Usually someone available in a popular service; a few attempts, then whoever was drawn last
+        int handle = popularFreelancer();
+        for (int attempt = 0; attempt < 3 && !freelancers[handle].isAvailable(); attempt++) {
+            handle = popularFreelancer();
+        }
+        begin(CommandParser.OP_EMPLOY_FREELANCER).append(customer.id).append(' ')
+                .append(freelancers[handle].id);
+        emit();
+        system.employ(customer.id, freelancers[handle].id, sink);
+        sink.reset();
+        syncEmployment(handle);
+    }
+
+    private void completeAndRate() throws IOException {
+        int handle = employedOrRandom();
+        // Ratings lean positive: half are 5, the rest spread over 0-4
+        int rating = random.nextInt(2) == 0 ? 5 : random.nextInt(5);
+        begin(CommandParser.OP_COMPLETE_AND_RATE).append(freelancers[handle].id).append(' ').append(rating);
+        emit();
+        system.completeAndRate(freelancers[handle].id, rating, sink);
+        sink.reset();
+        syncEmployment(handle);
+    }
+
+    private void cancelByFreelancer() throws IOException {
+        int handle = employedOrRandom();
+        begin(CommandParser.OP_CANCEL_BY_FREELANCER).append(freelancers[handle].id);
+        emit();
+        system.cancelByFreelancer(freelancers[handle].id, sink);
+        sink.reset();
+        syncEmployment(handle);
+    }
+
+    private void cancelByCustomer() throws IOException {
+        int handle = employedOrRandom();
+        int owner = freelancers[handle].getCurrentCustomer();
+        Customer customer = customers[owner >= 0 ? owner : random.nextInt(customerCount)];
+        begin(CommandParser.OP_CANCEL_BY_CUSTOMER).append(customer.id).append(' ')
+                .append(freelancers[handle].id);
+        emit();
+        system.cancelByCustomer(customer.id, freelancers[handle].id, sink);
+        sink.reset();
+        syncEmployment(handle);
+    }
+
+    private void blacklist(int customerHandle) throws IOException {
+        Customer customer = customers[customerHandle];
+        int handle = popularFreelancer();
+        begin(CommandParser.OP_BLACKLIST).append(customer.id).append(' ').append(freelancers[handle].id);
+        emit();
+        boolean added = !customer.isBlacklisted(handle);
+        system.blacklist(customer.id, freelancers[handle].id, sink);
+        sink.reset();
+        if (added) {
+            if (blacklistedCount == blacklisted.length) {
+                blacklisted = Arrays.copyOf(blacklisted, blacklistedCount * 2);
+            }
+            long entry = (long) customerHandle << 32 | handle;
+            blacklistedPosition.put(entry, blacklistedCount);
+            blacklisted[blacklistedCount++] = entry;
+        }
+    }
+
+    private void unblacklist() throws IOException {
+        if (blacklistedCount == 0) {
+            blacklist(random.nextInt(customerCount));
+            return;
+        }
+        int position = random.nextInt(blacklistedCount);
+        long entry = blacklisted[position];
+        Customer customer = customers[(int) (entry >>> 32)];
+        Freelancer freelancer = freelancers[(int) entry];
+        begin(CommandParser.OP_UNBLACKLIST).append(customer.id).append(' ').append(freelancer.id);
+        emit();
+        system.unblacklist(customer.id, freelancer.id, sink);
+        sink.reset();
+        long last = blacklisted[--blacklistedCount];
+        blacklisted[position] = last;
+        blacklistedPosition.put(last, position);
+        blacklistedPosition.remove(entry);
+    }
+
+    private void changeService() throws IOException {
+        Freelancer freelancer = freelancers[random.nextInt(freelancerCount)];
+        String service = SERVICES[service()];
+        int price = 20 + random.nextInt(481);
+        begin(CommandParser.OP_CHANGE_SERVICE).append(freelancer.id).append(' ').append(service)
+                .append(' ').append(price);
+        emit();
+        system.changeService(freelancer.id, service, price, sink);
+        sink.reset();
+    }
+
+    private void updateSkill() throws IOException {
+        Freelancer freelancer = freelancers[random.nextInt(freelancerCount)];
+        int[] skills = skills();
+        begin(CommandParser.OP_UPDATE_SKILL).append(freelancer.id);
+        for (int s : skills) line.append(' ').append(s);
+        emit();
+        system.updateSkill(freelancer.id, skills[0], skills[1], skills[2], skills[3], skills[4], sink);
+        sink.reset();
+    }
+
+    private void queryFreelancer() throws IOException {
+        String id = freelancers[random.nextInt(freelancerCount)].id;
+        begin(CommandParser.OP_QUERY_FREELANCER).append(id);
+        emit();
+        system.queryFreelancer(id, sink);
+        sink.reset();
+    }
+
+    private void queryCustomer() throws IOException {
+        String id = customers[random.nextInt(customerCount)].id;
+        begin(CommandParser.OP_QUERY_CUSTOMER).append(id);
+        emit();
+        system.queryCustomer(id, sink);
+        sink.reset();
+    }
+
+    private void simulateMonth() throws IOException {
+        begin(CommandParser.OP_SIMULATE_MONTH);
+        line.setLength(line.length() - 1);
+        emit();
+        system.simulateMonth(sink);
+        sink.reset();
+    }
+
+    // ---- Helpers ----
+
+    /**
+     * Index of a service, drawn with Zipfian popularity.
+     */
+    private int service() {
+        double roll = random.nextDouble();
+        int s = 0;
+        while (s < SERVICES.length - 1 && roll >= serviceCumulative[s]) s++;
+        return s;
+    }
+
+    /**
+     * A freelancer registered in a service drawn by popularity.
+     */
+    private int popularFreelancer() {
+        int service = service();
+        if (serviceMemberCount[service] == 0) {
+            return random.nextInt(freelancerCount);
+        }
+        return serviceMembers[service][random.nextInt(serviceMemberCount[service])];
+    }
+
+    /**
+     * An employed freelancer, or (for the error fraction, or when nobody is
+     * employed) any freelancer.
+     */
+    private int employedOrRandom() {
+        if (employedCount == 0 || random.nextDouble() < errors) {
+            return random.nextInt(freelancerCount);
+        }
+        return employed[random.nextInt(employedCount)];
+    }
+
+    /**
+     * Bring the employed list in line with a freelancer's state after a command.
+     */
+    private void syncEmployment(int handle) {
+        boolean isEmployed = freelancers[handle].getCurrentCustomer() >= 0;
+        int position = employedPosition[handle];
+        if (isEmployed && position < 0) {
+            if (employedCount == employed.length) {
+                employed = Arrays.copyOf(employed, employedCount * 2);
+            }
+            employedPosition[handle] = employedCount;
+            employed[employedCount++] = handle;
+        } else if (!isEmployed && position >= 0) {
+            int last = employed[--employedCount];
+            employed[position] = last;
+            employedPosition[last] = position;
+            employedPosition[handle] = -1;
+        }
+    }
+
+    private int[] skills() {
+        int[] skills = new int[5];
+        for (int k = 0; k < 5; k++) {
+            // Roughly bell-shaped around 60
+            skills[k] = Math.min(100, (random.nextInt(61) + random.nextInt(61)) / 2 + 30);
+        }
+        return skills;
+    }
+
+    private StringBuilder begin(int opcode) {
+        written[opcode]++;
+        line.setLength(0);
+        return line.append(CommandParser.OPERATION_NAMES[opcode]).append(' ');
+    }
+
+    private void emit() throws IOException {
+        line.append('\n');
+        out.append(line);
+    }
+
+    /**
+     * Summary of the trace on standard error.
+     */
+    private void report() {
+        long total = 0;
+        for (long count : written) total += count;
+        System.err.printf("%d lines, %d freelancers, %d customers, %d employed, "
+                + "%d blacklist entries at the end%n",
+                total, freelancerCount, customerCount, employedCount, blacklistedCount);
+        for (int op = 1; op < written.length; op++) {
+            if (written[op] > 0) {
+                System.err.printf("  %-22s %12d  %5.1f%%%n", CommandParser.OPERATION_NAMES[op], written[op],
+                        100.0 * written[op] / total);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A parsed command line: the opcode with its arguments already converted, and
+ * a copy of the line for error messages. Once decoded it no longer refers to
+ * the input buffer, so it can be handed to another thread, and instances are
+ * meant to be reused from line to line.
+ */
+public class Command {
+    int opcode;
+
+    // ID and name arguments in line order (freelancer, customer or service IDs)
+    String id1;
+    String id2;
+
+    // Integer arguments in line order (prices, skills, ratings, topK)
+    final int[] ints = new int[6];
+
+    // Rows of register_freelancers: IDs, services and six integers per row
+    String[] rowIds = new String[16];
+    String[] rowServices = new String[16];
+    int[] rowInts = new int[96];
+    int rows;
+
+    // Set when the arguments could not be parsed; the command only reports an error
+    boolean malformed;
+
+    // Trimmed line, as bytes for ASCII lines or decoded for others
+    private byte[] lineBytes = new byte[64];
+    private int lineLength;
+    private String decodedLine;
+
+    /**
+     * Fill this command from the parser's current line.
+     * Arguments are read the same way the operations consume them, so a line
+     * that is too short or has a bad number comes out malformed.
+     */
+    public void decode(CommandParser parser) {
+        opcode = parser.opcode();
+        id1 = null;
+        id2 = null;
+        malformed = false;
+
+        if (parser.isDecoded()) {
+            decodedLine = parser.line();
+        } else {
+            decodedLine = null;
+            lineBytes = parser.copyLine(lineBytes);
+            lineLength = parser.lineLength();
+        }
+
+        try {
+            switch (opcode) {
+                case CommandParser.OP_REGISTER_CUSTOMER:
+                case CommandParser.OP_CANCEL_BY_FREELANCER:
+                case CommandParser.OP_QUERY_FREELANCER:
+                case CommandParser.OP_QUERY_CUSTOMER:
+                    id1 = parser.token(1);
+                    break;
+
+                case CommandParser.OP_EMPLOY_FREELANCER:
+                case CommandParser.OP_CANCEL_BY_CUSTOMER:
+                case CommandParser.OP_BLACKLIST:
+                case CommandParser.OP_UNBLACKLIST:
+                    id1 = parser.token(1);
+                    id2 = parser.token(2);
+                    break;
+
+                case CommandParser.OP_REGISTER_FREELANCER:
+                    // freelancerID service price T C R E A
+                    id1 = parser.token(1);
+                    id2 = parser.token(2);
+                    for (int k = 0; k < 6; k++) {
+                        ints[k] = parser.intToken(3 + k);
+                    }
+                    break;
+
+                case CommandParser.OP_REQUEST_JOB:
+                case CommandParser.OP_CHANGE_SERVICE:
+                    // customerID service topK / freelancerID service price
+                    id1 = parser.token(1);
+                    id2 = parser.token(2);
+                    ints[0] = parser.intToken(3);
+                    break;
+
+                case CommandParser.OP_COMPLETE_AND_RATE:
+                    id1 = parser.token(1);
+                    ints[0] = parser.intToken(2);
+                    break;
+
+                case CommandParser.OP_UPDATE_SKILL:
+                    // freelancerID T C R E A
+                    id1 = parser.token(1);
+                    for (int k = 0; k < 5; k++) {
+                        ints[k] = parser.intToken(2 + k);
+                    }
+                    break;
+
+                case CommandParser.OP_REGISTER_FREELANCERS:
+                    // (freelancerID service price T C R E A)+
+                    decodeRows(parser);
+                    break;
+
+                case CommandParser.OP_SIMULATE_MONTH:
+                case CommandParser.OP_STATS:
+                    break;
+
+                default:
+                    // Operation name, for the unknown command message
+                    id1 = parser.token(0);
+            }
+        } catch (RuntimeException e) {
+            malformed = true;
+        }
+    }
+
+    /**
+     * Read register_freelancers rows of eight arguments each. A missing or partial
+     * row makes the whole line malformed.
+     */
+    private void decodeRows(CommandParser parser) {
+        int arguments = parser.tokenCount() - 1;
+        if (arguments == 0 || arguments % 8 != 0) {
+            throw new IllegalArgumentException("register_freelancers needs rows of 8 arguments");
+        }
+        rows = arguments / 8;
+        if (rows > rowIds.length) {
+            int capacity = Math.max(rows, rowIds.length * 2);
+            rowIds = new String[capacity];
+            rowServices = new String[capacity];
+            rowInts = new int[6 * capacity];
+        }
+        for (int i = 0; i < rows; i++) {
+            int base = 1 + 8 * i;
+            rowIds[i] = parser.token(base);
+            rowServices[i] = parser.token(base + 1);
+            for (int k = 0; k < 6; k++) {
+                rowInts[6 * i + k] = parser.intToken(base + 2 + k);
+            }
+        }
+    }
+
+    /**
+     * Append the trimmed command line to the sink.
+     */
+    public void appendLine(OutputSink out) {
+        if (decodedLine != null) {
+            out.append(decodedLine);
+        } else {
+            out.append(lineBytes, 0, lineLength);
+        }
+    }
+
+    /**
+     * The trimmed command line as a String.
+     */
+    public String line() {
+        if (decodedLine != null) {
+            return decodedLine;
+        }
+        return new String(lineBytes, 0, lineLength, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,507 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary write-ahead journal of the commands that changed system state.
+ * The file starts with a header
+ *   [int magic "GMJL"][int version][long generation]
+ * followed by records, each
+ *   [int length][byte opcode][fields...][int CRC32C of opcode and fields]
+ * where opcodes are the CommandParser ones, ints are 4 bytes big-endian and
+ * strings are an int byte count followed by UTF-8 bytes. A request_job
+ * is journaled by its outcome (customer, service, auto-employed freelancer), so
+ * replay does not rank candidates again; a register_freelancers batch is one
+ * record holding all of its rows.
+ *
+ * Records are buffered and committed in groups: one write and one fsync per group,
+ * when GROUP_COMMIT_RECORDS records or GROUP_COMMIT_BYTES bytes are pending,
+ * when the oldest pending record is GROUP_COMMIT_NANOS old, or on commit()/close().
+ * A crash loses at most the uncommitted group. Recovery replays every intact
+ * record and truncates a torn or corrupt tail, after which appending resumes.
+ *
+ * rotate() checkpoints the journal: once a snapshot holds the state its records
+ * built, the file is atomically replaced by an empty one of the next generation,
+ * so the journal grows only with the changes since the last snapshot.
+ *
+ * Records are appended by one thread, but commit() may be called from another
+ * (the pipeline's output writer): the methods are synchronized, and a commit
+ * writes only completed records, keeping a record in progress for the next one.
+ */
+public class CommandJournal implements AutoCloseable {
+    private static final int JOURNAL_MAGIC = 0x474D4A4C; // "GMJL"
+    private static final int JOURNAL_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    private static final int GROUP_COMMIT_RECORDS = 1024;
+    private static final int GROUP_COMMIT_BYTES = 1 << 20;
+    private static final long GROUP_COMMIT_NANOS = 5_000_000L;
+
+    // length + opcode + CRC
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+
+    // Largest payload replay accepts; a length field outside 1..this marks the end of the valid log
+    private static final int MAX_RECORD_LENGTH = (1 << 30) - 8;
+
+    private final Path path;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    // Incremented by every rotation; a new journal starts at 0
+    private long generation;
+
+    // Pending (uncommitted) records
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(GROUP_COMMIT_BYTES + (1 << 16));
+    private int pendingRecords;
+    private long oldestPendingNanos;
+
+    // Start of the record being built
+    private int recordStart = -1;
+
+    private final CRC32C crc = new CRC32C();
+
+    // Statistics
+    private long recordsWritten;
+    private long commits;
+
+    private CommandJournal(Path path, FileChannel channel, long generation, boolean fsync) {
+        this.path = path;
+        this.channel = channel;
+        this.generation = generation;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Open (or create) a journal file. An empty file gets a generation 0 header.
+     * Existing records are not read until replay() is called; appends go after them.
+     */
+    public static CommandJournal open(Path path, boolean fsync) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long generation = 0;
+            if (channel.size() == 0) {
+                writeHeader(channel, generation, fsync);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                int read;
+                do {
+                    read = channel.read(header, header.position());
+                } while (read > 0 && header.hasRemaining());
+                header.flip();
+                if (header.remaining() < HEADER_SIZE || header.getInt() != JOURNAL_MAGIC
+                        || header.getInt() != JOURNAL_VERSION) {
+                    throw new IOException("Not a GigMatch journal (or unsupported version): " + path);
+                }
+                generation = header.getLong();
+            }
+            channel.position(channel.size());
+            return new CommandJournal(path, channel, generation, fsync);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, long generation, boolean fsync) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(JOURNAL_VERSION).putLong(generation).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        if (fsync) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Generation of the current file: the number of rotations it has been through.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Start a record for the given opcode. Fields are added with string()/integer()
+     * and the record is finished with end().
+     */
+    public synchronized CommandJournal begin(int opcode) {
+        ensureRemaining(RECORD_OVERHEAD);
+        recordStart = buffer.position();
+        buffer.putInt(0); // length, filled in by end()
+        buffer.put((byte) opcode);
+        return this;
+    }
+
+    /**
+     * Add a string field. Any length fits, so a record is never left half-written
+     * in the buffer after its command has already changed the system.
+     */
+    public synchronized CommandJournal string(String value) {
+        int n = value.length();
+        // ASCII strings are copied char by char, anything else is UTF-8 encoded
+        boolean ascii = true;
+        for (int i = 0; i < n && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            ensureRemaining(4 + n);
+            buffer.putInt(n);
+            for (int i = 0; i < n; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        return this;
+    }
+
+    public synchronized CommandJournal integer(int value) {
+        ensureRemaining(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    /**
+     * Finish the current record, committing the group if it is full or old enough.
+     */
+    public synchronized void end() {
+        ensureRemaining(4);
+        int payloadStart = recordStart + 4;
+        int payloadEnd = buffer.position();
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(payloadStart).limit(payloadEnd);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(recordStart, payloadEnd - payloadStart);
+        recordStart = -1;
+
+        if (pendingRecords++ == 0) {
+            oldestPendingNanos = System.nanoTime();
+        }
+        recordsWritten++;
+        if (pendingRecords >= GROUP_COMMIT_RECORDS || buffer.position() >= GROUP_COMMIT_BYTES ||
+                System.nanoTime() - oldestPendingNanos >= GROUP_COMMIT_NANOS) {
+            commit();
+        }
+    }
+
+    /**
+     * Write all pending records and force them to disk (when fsync is enabled).
+     */
+    public synchronized void commit() {
+        if (pendingRecords == 0) {
+            return;
+        }
+        try {
+            ByteBuffer completed = buffer.duplicate();
+            completed.position(0).limit(recordStart >= 0 ? recordStart : buffer.position());
+            while (completed.hasRemaining()) {
+                channel.write(completed);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write journal", e);
+        }
+        if (recordStart >= 0) {
+            // Move the record in progress to the front
+            buffer.limit(buffer.position()).position(recordStart);
+            buffer.compact();
+            recordStart = 0;
+        } else {
+            buffer.clear();
+        }
+        pendingRecords = 0;
+        commits++;
+    }
+
+    /**
+     * File offset after the last committed record, which is where the next
+     * commit appends. A snapshot stores it with the generation, so replay can
+     * skip the records the snapshot already holds.
+     */
+    public synchronized long getPosition() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Checkpoint the journal after a snapshot has saved the state its records built:
+     * commit pending records, then atomically replace the file with an empty one
+     * of the next generation. A crash leaves either the old file or the new one.
+     * Must not be called while a record is in progress.
+     */
+    public synchronized void rotate() throws IOException {
+        if (recordStart >= 0) {
+            throw new IllegalStateException("Journal rotated in the middle of a record");
+        }
+        try {
+            commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel next = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(next, generation + 1, fsync);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (fsync) {
+            forceDirectory(path.toAbsolutePath().getParent());
+        }
+
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(HEADER_SIZE);
+        generation++;
+    }
+
+    /**
+     * Make a rename in the directory durable. Not every platform can open a
+     * directory, so this is best effort.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // The rename is still atomic, only not yet durable
+        }
+    }
+
+    /**
+     * Number of records appended since the journal was opened.
+     */
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+     * Number of group commits since the journal was opened.
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Grow the buffer (keeping the record in progress) if a field does not fit.
+     */
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(
+                    Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Apply every intact record the system does not already hold, truncating
+     * the file after the last one. The system must not be journaling while it
+     * replays. Returns the number of records applied.
+     *
+     * snapshotGeneration and snapshotPosition say where the system's snapshot
+     * left the journal (see GigMatchSystem.getSnapshotJournalGeneration()):
+     * a journal of the next generation was rotated after that snapshot and is
+     * replayed whole; in the same generation, replay starts at snapshotPosition,
+     * or, when that is -1 (the snapshot covers the whole generation), the journal
+     * must be empty and is rotated so new records are not mistaken for covered
+     * ones. Any other combination is an IOException: replaying it would apply
+     * changes twice or miss some.
+     */
+    public synchronized long replay(GigMatchSystem system, long snapshotGeneration, long snapshotPosition)
+            throws IOException {
+        long size = channel.size();
+        if (generation == snapshotGeneration + 1) {
+            return replayFrom(system, HEADER_SIZE);
+        }
+        if (snapshotGeneration < 0) {
+            throw new IOException("Journal " + path + " (generation " + generation
+                    + ") continues from a snapshot, but the system was not restored from one");
+        }
+        if (generation != snapshotGeneration) {
+            throw new IOException("Journal " + path + " (generation " + generation
+                    + ") does not continue the snapshot (journal generation " + snapshotGeneration + ")");
+        }
+        if (snapshotPosition < 0) {
+            if (size > HEADER_SIZE) {
+                throw new IOException("Journal " + path
+                        + " has records made after a snapshot that covers it");
+            }
+            rotate();
+            return 0;
+        }
+        if (snapshotPosition < HEADER_SIZE || snapshotPosition > size) {
+            throw new IOException("Journal " + path + " ends before the snapshot's position "
+                    + snapshotPosition);
+        }
+        return replayFrom(system, snapshotPosition);
+    }
+
+    private long replayFrom(GigMatchSystem system, long start) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(1 << 20);
+        in.limit(0);
+        OutputSink discard = new OutputSink();
+        long filePosition = start;   // file offset of in[0]
+        long validEnd = start;       // file offset after the last intact record
+        long applied = 0;
+        boolean eof = false;
+
+        channel.position(start);
+        while (true) {
+            // The length is checked before any arithmetic, so a damaged one cannot overflow
+            int needed = 4;
+            if (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 1 || length > MAX_RECORD_LENGTH) {
+                    break; // garbage length: the valid log ends here
+                }
+                needed = 4 + length + 4;
+            }
+
+            // Length prefix and the whole record must be buffered
+            if (in.remaining() < needed) {
+                if (eof) {
+                    break;
+                }
+                filePosition += in.position();
+                in.compact();
+                if (in.capacity() < needed) {
+                    in.flip();
+                    in = ByteBuffer.allocate(Math.max(needed, in.capacity() * 2)).put(in);
+                }
+                eof = channel.read(in) < 0;
+                in.flip();
+                continue;
+            }
+
+            int recordAt = in.position();
+            int length = in.getInt();
+            ByteBuffer payload = in.duplicate();
+            payload.limit(in.position() + length);
+            crc.reset();
+            crc.update(payload);
+            int storedCrc = in.getInt(in.position() + length);
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+
+            discard.reset();
+            apply(system, in, discard);
+            in.position(recordAt + 4 + length + 4);
+            validEnd = filePosition + in.position();
+            applied++;
+        }
+
+        // Drop a torn or corrupt tail so new records follow the last intact one
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        return applied;
+    }
+
+    private static void apply(GigMatchSystem system, ByteBuffer in, OutputSink out) {
+        int opcode = in.get();
+        switch (opcode) {
+            case CommandParser.OP_REGISTER_CUSTOMER:
+                system.registerCustomer(readString(in), out);
+                break;
+            case CommandParser.OP_REGISTER_FREELANCER:
+                system.registerFreelancer(readString(in), readString(in), in.getInt(),
+                        in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt(), out);
+                break;
+            case CommandParser.OP_REGISTER_FREELANCERS:
+                replayRegisterFreelancers(system, in, out);
+                break;
+            case CommandParser.OP_EMPLOY_FREELANCER:
+                system.employ(readString(in), readString(in), out);
+                break;
+            case CommandParser.OP_REQUEST_JOB:
+                system.replayRequestJob(readString(in), readString(in), readString(in));
+                break;
+            case CommandParser.OP_COMPLETE_AND_RATE:
+                system.completeAndRate(readString(in), in.getInt(), out);
+                break;
+            case CommandParser.OP_CANCEL_BY_FREELANCER:
+                system.cancelByFreelancer(readString(in), out);
+                break;
+            case CommandParser.OP_CANCEL_BY_CUSTOMER:
+                system.cancelByCustomer(readString(in), readString(in), out);
+                break;
+            case CommandParser.OP_BLACKLIST:
+                system.blacklist(readString(in), readString(in), out);
+                break;
+            case CommandParser.OP_UNBLACKLIST:
+                system.unblacklist(readString(in), readString(in), out);
+                break;
+            case CommandParser.OP_CHANGE_SERVICE:
+                system.changeService(readString(in), readString(in), in.getInt(), out);
+                break;
+            case CommandParser.OP_SIMULATE_MONTH:
+                system.simulateMonth(out);
+                break;
+            case CommandParser.OP_UPDATE_SKILL:
+                system.updateSkill(readString(in), in.getInt(), in.getInt(), in.getInt(),
+                        in.getInt(), in.getInt(), out);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal opcode " + opcode);
+        }
+    }
+
+    /**
+     * A register_freelancers record: [int rows] then per row ID, service and six ints.
+     * The whole batch is replayed as one, so rankings are rebuilt the same way.
+     */
+    private static void replayRegisterFreelancers(GigMatchSystem system, ByteBuffer in, OutputSink out) {
+        int rows = in.getInt();
+        String[] ids = new String[rows];
+        String[] services = new String[rows];
+        int[] values = new int[6 * rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = readString(in);
+            services[i] = readString(in);
+            for (int k = 6 * i; k < 6 * i + 6; k++) {
+                values[k] = in.getInt();
+            }
+        }
+        system.registerFreelancers(ids, services, values, rows, out);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
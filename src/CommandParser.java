@@ -0,0 +1,315 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizes command lines straight from bytes.
+ * A line is trimmed like String.trim() and split on the same characters as
+ * the regex \s+, token boundaries are recorded as offsets into the buffer, and
+ * the operation name is mapped to an int opcode once per line. Integer
+ * arguments are parsed in place with Integer.parseInt semantics, and only ID
+ * arguments are turned into Strings.
+ *
+ * Lines containing non-ASCII bytes are decoded with the platform charset (as
+ * FileReader does) and split as Strings, so they behave exactly as before.
+ */
+public class CommandParser {
+    // Opcodes for each supported operation
+    static final int OP_UNKNOWN = 0;
+    static final int OP_REGISTER_CUSTOMER = 1;
+    static final int OP_REGISTER_FREELANCER = 2;
+    static final int OP_REQUEST_JOB = 3;
+    static final int OP_EMPLOY_FREELANCER = 4;
+    static final int OP_COMPLETE_AND_RATE = 5;
+    static final int OP_CANCEL_BY_FREELANCER = 6;
+    static final int OP_CANCEL_BY_CUSTOMER = 7;
+    static final int OP_BLACKLIST = 8;
+    static final int OP_UNBLACKLIST = 9;
+    static final int OP_CHANGE_SERVICE = 10;
+    static final int OP_SIMULATE_MONTH = 11;
+    static final int OP_QUERY_FREELANCER = 12;
+    static final int OP_QUERY_CUSTOMER = 13;
+    static final int OP_UPDATE_SKILL = 14;
+    static final int OP_REGISTER_FREELANCERS = 15;
+    static final int OP_STATS = 16;
+
+    // Operation names indexed by opcode
+    static final String[] OPERATION_NAMES = {
+            null,
+            "register_customer",
+            "register_freelancer",
+            "request_job",
+            "employ_freelancer",
+            "complete_and_rate",
+            "cancel_by_freelancer",
+            "cancel_by_customer",
+            "blacklist",
+            "unblacklist",
+            "change_service",
+            "simulate_month",
+            "query_freelancer",
+            "query_customer",
+            "update_skill",
+            "register_freelancers",
+            "stats"
+    };
+
+    private static final byte[][] OPERATION_BYTES = new byte[OPERATION_NAMES.length][];
+
+    static {
+        for (int op = 1; op < OPERATION_NAMES.length; op++) {
+            OPERATION_BYTES[op] = OPERATION_NAMES[op].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Current line: buffer and trimmed bounds
+    private ByteBuffer buf;
+    private int lineStart;
+    private int lineEnd;
+
+    // Token bounds within buf (ASCII lines)
+    private int[] tokenStart = new int[16];
+    private int[] tokenEnd = new int[16];
+    private int tokenCount;
+
+    // Tokens of a decoded non-ASCII line, null for ASCII lines
+    private String[] stringTokens;
+    private String decodedLine;
+
+    private int opcode;
+
+    // Scratch space for building ID strings
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Parse the line occupying [start, end) of the buffer (without its terminator).
+     * Returns false if the line is blank.
+     */
+    public boolean parse(ByteBuffer buf, int start, int end) {
+        // Trim like String.trim()
+        while (start < end && (buf.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') end--;
+        if (start == end) {
+            return false;
+        }
+
+        this.buf = buf;
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.stringTokens = null;
+        this.decodedLine = null;
+        this.tokenCount = 0;
+
+        int i = start;
+        while (i < end) {
+            int b = buf.get(i);
+            if (b < 0) {
+                return parseDecoded();
+            }
+            if (isSpace(b)) {
+                i++;
+                continue;
+            }
+            int tokenBegin = i;
+            while (i < end) {
+                b = buf.get(i);
+                if (b < 0) {
+                    return parseDecoded();
+                }
+                if (isSpace(b)) break;
+                i++;
+            }
+            addToken(tokenBegin, i);
+        }
+
+        opcode = lookupOpcode();
+        return true;
+    }
+
+    /**
+     * Parse a line given as a String, splitting it exactly like the original
+     * command.split("\\s+") on the trimmed line. Returns false if the line is blank.
+     */
+    public boolean parse(String line) {
+        line = line.trim();
+        if (line.isEmpty()) {
+            return false;
+        }
+        this.buf = null;
+        this.decodedLine = line;
+        this.stringTokens = line.split("\\s+");
+        this.tokenCount = stringTokens.length;
+        this.opcode = OP_UNKNOWN;
+        for (int op = 1; op < OPERATION_NAMES.length; op++) {
+            if (OPERATION_NAMES[op].equals(stringTokens[0])) {
+                opcode = op;
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fall back to decoding the current line when it contains non-ASCII bytes.
+     */
+    private boolean parseDecoded() {
+        int length = lineEnd - lineStart;
+        byte[] bytes = new byte[length];
+        buf.get(lineStart, bytes, 0, length);
+        return parse(new String(bytes, Charset.defaultCharset()));
+    }
+
+    /**
+     * Whitespace as matched by the regex \s: space, \t, \n, \u000B, \f, \r.
+     */
+    private static boolean isSpace(int b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    private void addToken(int start, int end) {
+        if (tokenCount == tokenStart.length) {
+            int[] grownStart = new int[tokenCount * 2];
+            int[] grownEnd = new int[tokenCount * 2];
+            System.arraycopy(tokenStart, 0, grownStart, 0, tokenCount);
+            System.arraycopy(tokenEnd, 0, grownEnd, 0, tokenCount);
+            tokenStart = grownStart;
+            tokenEnd = grownEnd;
+        }
+        tokenStart[tokenCount] = start;
+        tokenEnd[tokenCount] = end;
+        tokenCount++;
+    }
+
+    /**
+     * Match the first token against the operation names.
+     */
+    private int lookupOpcode() {
+        int start = tokenStart[0];
+        int length = tokenEnd[0] - start;
+        for (int op = 1; op < OPERATION_BYTES.length; op++) {
+            byte[] name = OPERATION_BYTES[op];
+            if (name.length != length) continue;
+            int k = 0;
+            while (k < length && buf.get(start + k) == name[k]) k++;
+            if (k == length) {
+                return op;
+            }
+        }
+        return OP_UNKNOWN;
+    }
+
+    /**
+     * Opcode of the current line, OP_UNKNOWN if the operation is not recognized.
+     */
+    public int opcode() {
+        return opcode;
+    }
+
+    /**
+     * Number of tokens on the current line, including the operation.
+     */
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Get token i as a String. Throws ArrayIndexOutOfBoundsException if the line is too short.
+     */
+    public String token(int i) {
+        if (i >= tokenCount) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+        if (stringTokens != null) {
+            return stringTokens[i];
+        }
+        int start = tokenStart[i];
+        int length = tokenEnd[i] - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buf.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parse token i as an int with Integer.parseInt rules, without creating a String.
+     * Throws ArrayIndexOutOfBoundsException if the line is too short and
+     * NumberFormatException if the token is not a valid int.
+     */
+    public int intToken(int i) {
+        if (i >= tokenCount) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+        if (stringTokens != null) {
+            return Integer.parseInt(stringTokens[i]);
+        }
+
+        int pos = tokenStart[i];
+        int end = tokenEnd[i];
+        boolean negative = false;
+        int first = buf.get(pos);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            pos++;
+            if (pos == end) {
+                throw new NumberFormatException();
+            }
+        }
+
+        // Accumulate negatively so Integer.MIN_VALUE parses without overflow
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        while (pos < end) {
+            int digit = buf.get(pos++) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw new NumberFormatException();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Whether the current line contained non-ASCII bytes and was decoded as a String.
+     */
+    public boolean isDecoded() {
+        return decodedLine != null;
+    }
+
+    /**
+     * Length in bytes of the current trimmed line (lines that were not decoded).
+     */
+    public int lineLength() {
+        return lineEnd - lineStart;
+    }
+
+    /**
+     * Copy the current trimmed line's bytes into dst, or into a larger array if
+     * dst is too small, and return the array used (lines that were not decoded).
+     */
+    public byte[] copyLine(byte[] dst) {
+        int length = lineEnd - lineStart;
+        if (length > dst.length) {
+            dst = new byte[Math.max(length, dst.length * 2)];
+        }
+        buf.get(lineStart, dst, 0, length);
+        return dst;
+    }
+
+    /**
+     * The current line, trimmed, as a String (used for error messages).
+     */
+    public String line() {
+        if (decodedLine != null) {
+            return decodedLine;
+        }
+        int length = lineEnd - lineStart;
+        byte[] bytes = new byte[length];
+        buf.get(lineStart, bytes, 0, length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Per-operation latency histograms and command/error counters for Main's
+ * command loop (--latency). Recording allocates nothing. The report is written
+ * to a sidecar file at exit and, with an interval, periodically while
+ * commands run; every report is cumulative since the start and replaces the
+ * previous one atomically.
+ *
+ * Not thread-safe: record is called by the thread executing commands, which
+ * also writes the periodic reports.
+ */
+public class CommandStats {
+    private static final byte[] SOME_ERROR = "Some error occurred".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR_PROCESSING =
+            "Error processing command".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UNKNOWN_COMMAND = "Unknown command".getBytes(StandardCharsets.US_ASCII);
+
+    // Indexed by opcode; OP_UNKNOWN collects unrecognized lines
+    private final LatencyHistogram[] latencies = new LatencyHistogram[CommandParser.OPERATION_NAMES.length];
+    private final long[] errors = new long[CommandParser.OPERATION_NAMES.length];
+
+    private final Path file;
+    private final long intervalNanos;
+    private final long startNanos;
+    private long nextReport;
+    private boolean reportFailed;
+
+    /**
+     * Collect statistics reported to the given file, also every intervalSeconds
+     * seconds if that is positive.
+     */
+    public CommandStats(Path file, long intervalSeconds) {
+        this.file = file;
+        for (int op = 0; op < latencies.length; op++) {
+            latencies[op] = new LatencyHistogram();
+        }
+        startNanos = System.nanoTime();
+        intervalNanos = intervalSeconds > 0 ? intervalSeconds * 1_000_000_000L : 0;
+        nextReport = startNanos + intervalNanos;
+    }
+
+    /**
+     * Count a command that ran from startNanos to endNanos and wrote its
+     * response to out from mark on. It was an error if the response is an error message.
+     */
+    public void record(int opcode, long startNanos, long endNanos, OutputSink out, int mark) {
+        latencies[opcode].record(endNanos - startNanos);
+        if (out.startsWith(mark, SOME_ERROR) || out.startsWith(mark, ERROR_PROCESSING)
+                || out.startsWith(mark, UNKNOWN_COMMAND)) {
+            errors[opcode]++;
+        }
+        if (intervalNanos > 0 && endNanos >= nextReport) {
+            nextReport = endNanos + intervalNanos;
+            try {
+                report();
+            } catch (IOException e) {
+                // Periodic reports are best-effort: warn once and keep processing commands
+                if (!reportFailed) {
+                    reportFailed = true;
+                    System.err.println("Error writing latency report: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the current report, replacing the previous one.
+     */
+    public void report() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.US_ASCII)) {
+            writeReport(writer);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeReport(Writer writer) throws IOException {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        LatencyHistogram all = new LatencyHistogram();
+        long allErrors = 0;
+        for (int op = 0; op < latencies.length; op++) {
+            all.add(latencies[op]);
+            allErrors += errors[op];
+        }
+
+        writer.write(String.format(Locale.US, "# %d commands in %.3f s; latencies in ns%n",
+                all.totalCount(), seconds));
+        writer.write(String.format(Locale.US, "%-22s %12s %10s %12s %10s %10s %10s %12s%n",
+                "operation", "count", "errors", "per_sec", "p50", "p99", "p999", "max"));
+        for (int op = 1; op < latencies.length; op++) {
+            writeRow(writer, CommandParser.OPERATION_NAMES[op], latencies[op], errors[op], seconds);
+        }
+        if (latencies[CommandParser.OP_UNKNOWN].totalCount() > 0) {
+            writeRow(writer, "unknown", latencies[CommandParser.OP_UNKNOWN],
+                    errors[CommandParser.OP_UNKNOWN], seconds);
+        }
+        writeRow(writer, "all", all, allErrors, seconds);
+    }
+
+    private static void writeRow(Writer writer, String name, LatencyHistogram histogram, long errors,
+                                 double seconds) throws IOException {
+        long count = histogram.totalCount();
+        if (count == 0) {
+            return;
+        }
+        writer.write(String.format(Locale.US, "%-22s %12d %10d %12.0f %10d %10d %10d %12d%n",
+                name, count, errors, seconds > 0 ? count / seconds : 0.0,
+                histogram.valueAtPercentile(50), histogram.valueAtPercentile(99),
+                histogram.valueAtPercentile(99.9), histogram.maxValue()));
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe façade over a GigMatchSystem for multi-threaded servers.
+ *
+ * Locking:
+ * - a structure read-write lock: every operation holds it shared, except
+ *   registrations (which grow the shared maps, ID registries and freelancer
+ *   columns) and simulateMonth (the global barrier), which hold it exclusively;
+ * - customer stripes, guarding customer state (spending, employments, blacklist);
+ * - one lock per service, guarding its ranking and the ranking-relevant state
+ *   (availability, ban, scores) of every freelancer offering that service;
+ * - freelancer stripes, guarding a freelancer's remaining state, so queries
+ *   do not need the service lock;
+ * - a lock for the queue of pending service changes.
+ * Locks are always taken in the order customer stripe, service lock, freelancer
+ * stripe. A freelancer's service and the set of registered IDs only change
+ * under the exclusive structure lock, so they can be read before locking.
+ *
+ * Semantics: every operation is linearizable. It takes effect atomically at
+ * some point while it holds its locks, and operations that share a customer,
+ * a freelancer or a service are ordered by those locks. Each response is therefore
+ * the one the serial GigMatchSystem would produce for the same operations in
+ * that order.
+ *
+ * Per-service locking relies on every ranked freelancer having exactly one
+ * entry, in its own service's ranking. A service change applied to an employed
+ * freelancer can leave extra entries behind (rankings then read freelancers
+ * guarded by another service's lock), so once simulateMonth finds that, every
+ * later operation takes the structure lock exclusively. The façade does not
+ * journal; the wrapped system must not have a journal set.
+ */
+public class ConcurrentGigMatchSystem {
+    // Number of customer and freelancer stripes (a power of two)
+    private static final int STRIPES = 256;
+
+    private final GigMatchSystem system;
+
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] customerStripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock[] freelancerStripes = new ReentrantLock[STRIPES];
+    private final OpenHashMap<String, ReentrantLock> serviceLocks = new OpenHashMap<>();
+    private final ReentrantLock changeLock = new ReentrantLock();
+
+    // Set (under the exclusive structure lock) once per-service locking is no longer enough
+    private volatile boolean serialized;
+
+    public ConcurrentGigMatchSystem() {
+        this(new GigMatchSystem());
+    }
+
+    /**
+     * Wrap an existing system (e.g. restored from a snapshot). It must not be
+     * used directly afterwards.
+     */
+    public ConcurrentGigMatchSystem(GigMatchSystem system) {
+        this.system = system;
+        for (int i = 0; i < STRIPES; i++) {
+            customerStripes[i] = new ReentrantLock();
+            freelancerStripes[i] = new ReentrantLock();
+        }
+        ArrayList<String> services = system.serviceNames();
+        for (int i = 0; i < services.size(); i++) {
+            serviceLocks.put(services.get(i), new ReentrantLock());
+        }
+        serialized = !system.rankingsSelfContained();
+    }
+
+    /**
+     * Whether operations have fallen back to running one at a time.
+     */
+    public boolean isSerialized() {
+        return serialized;
+    }
+
+    public String registerCustomer(String id) {
+        structureLock.writeLock().lock();
+        try {
+            return system.registerCustomer(id);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    public String registerFreelancer(String id, String service, int price,
+                                     int t, int c, int r, int e, int a) {
+        structureLock.writeLock().lock();
+        try {
+            return system.registerFreelancer(id, service, price, t, c, r, e, a);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    public String registerFreelancers(String[] ids, String[] services, int[] values, int rows) {
+        structureLock.writeLock().lock();
+        try {
+            return system.registerFreelancers(ids, services, values, rows);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    public String employ(String custId, String freelId) {
+        return withCustomerAndFreelancer(custId, freelId, () -> system.employ(custId, freelId));
+    }
+
+    public String requestJob(String custId, String service, int numCandidates) {
+        Lock structure = enter();
+        try {
+            Customer customer = system.findCustomer(custId);
+            ReentrantLock serviceLock = serviceLocks.get(service);
+            if (customer == null || serviceLock == null) {
+                return system.requestJob(custId, service, numCandidates);
+            }
+            ReentrantLock customerLock = customerStripe(customer.handle);
+            customerLock.lock();
+            serviceLock.lock();
+            try {
+                ArrayList<Freelancer> candidates =
+                        system.getEligibleFreelancers(service, customer, numCandidates);
+                OutputSink out = new OutputSink();
+                if (candidates.isEmpty()) {
+                    system.finishRequestJob(customer, service, numCandidates, candidates, out);
+                    return out.toString();
+                }
+                // The best candidate is employed, which also needs its stripe
+                ReentrantLock freelancerLock = freelancerStripe(candidates.get(0).handle);
+                freelancerLock.lock();
+                try {
+                    system.finishRequestJob(customer, service, numCandidates, candidates, out);
+                } finally {
+                    freelancerLock.unlock();
+                }
+                return out.toString();
+            } finally {
+                serviceLock.unlock();
+                customerLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    public String completeAndRate(String freelId, int rating) {
+        OutputSink out = new OutputSink();
+        withEmployment(freelId, () -> system.completeAndRate(freelId, rating, out));
+        return out.toString();
+    }
+
+    public String cancelByFreelancer(String freelId) {
+        OutputSink out = new OutputSink();
+        withEmployment(freelId, () -> system.cancelByFreelancer(freelId, out));
+        return out.toString();
+    }
+
+    public String cancelByCustomer(String custId, String freelId) {
+        return withCustomerAndFreelancer(custId, freelId, () -> system.cancelByCustomer(custId, freelId));
+    }
+
+    public String blacklist(String custId, String freelId) {
+        return withCustomer(custId, () -> system.blacklist(custId, freelId));
+    }
+
+    public String unblacklist(String custId, String freelId) {
+        return withCustomer(custId, () -> system.unblacklist(custId, freelId));
+    }
+
+    public String queryCustomer(String custId) {
+        return withCustomer(custId, () -> system.queryCustomer(custId));
+    }
+
+    public String queryFreelancer(String freelId) {
+        Lock structure = enter();
+        try {
+            Freelancer freelancer = system.findFreelancer(freelId);
+            if (freelancer == null) {
+                return system.queryFreelancer(freelId);
+            }
+            ReentrantLock freelancerLock = freelancerStripe(freelancer.handle);
+            freelancerLock.lock();
+            try {
+                return system.queryFreelancer(freelId);
+            } finally {
+                freelancerLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    public String updateSkill(String freelId, int t, int c, int r, int e, int a) {
+        Lock structure = enter();
+        try {
+            Freelancer freelancer = system.findFreelancer(freelId);
+            if (freelancer == null) {
+                return system.updateSkill(freelId, t, c, r, e, a);
+            }
+            ReentrantLock serviceLock = serviceLocks.get(freelancer.service);
+            ReentrantLock freelancerLock = freelancerStripe(freelancer.handle);
+            serviceLock.lock();
+            freelancerLock.lock();
+            try {
+                return system.updateSkill(freelId, t, c, r, e, a);
+            } finally {
+                freelancerLock.unlock();
+                serviceLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    public String changeService(String freelId, String newService, int newPrice) {
+        Lock structure = enter();
+        try {
+            // Only touches the pending change queue; the freelancer's service is stable here
+            changeLock.lock();
+            try {
+                return system.changeService(freelId, newService, newPrice);
+            } finally {
+                changeLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    /**
+     * The global barrier: runs with every other operation excluded.
+     */
+    public String simulateMonth() {
+        structureLock.writeLock().lock();
+        try {
+            String result = system.simulateMonth();
+            if (!serialized && !system.rankingsSelfContained()) {
+                serialized = true;
+            }
+            return result;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Structure statistics, taken with every other operation excluded.
+     */
+    public String stats() {
+        structureLock.writeLock().lock();
+        try {
+            return system.stats();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Run GigMatchSystem.checkConsistency with every other operation excluded.
+     */
+    public void checkConsistency() {
+        structureLock.writeLock().lock();
+        try {
+            system.checkConsistency();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Take the structure lock for a regular operation: shared, or exclusive once serialized.
+     */
+    private Lock enter() {
+        while (true) {
+            if (serialized) {
+                structureLock.writeLock().lock();
+                return structureLock.writeLock();
+            }
+            structureLock.readLock().lock();
+            if (!serialized) {
+                return structureLock.readLock();
+            }
+            structureLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run an operation holding a customer's stripe, the service lock of a
+     * freelancer and the freelancer's stripe.
+     */
+    private String withCustomerAndFreelancer(String custId, String freelId, Supplier<String> operation) {
+        Lock structure = enter();
+        try {
+            Customer customer = system.findCustomer(custId);
+            Freelancer freelancer = system.findFreelancer(freelId);
+            if (customer == null || freelancer == null) {
+                return operation.get();
+            }
+            ReentrantLock customerLock = customerStripe(customer.handle);
+            ReentrantLock serviceLock = serviceLocks.get(freelancer.service);
+            ReentrantLock freelancerLock = freelancerStripe(freelancer.handle);
+            customerLock.lock();
+            serviceLock.lock();
+            freelancerLock.lock();
+            try {
+                return operation.get();
+            } finally {
+                freelancerLock.unlock();
+                serviceLock.unlock();
+                customerLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    private String withCustomer(String custId, Supplier<String> operation) {
+        Lock structure = enter();
+        try {
+            Customer customer = system.findCustomer(custId);
+            if (customer == null) {
+                return operation.get();
+            }
+            ReentrantLock customerLock = customerStripe(customer.handle);
+            customerLock.lock();
+            try {
+                return operation.get();
+            } finally {
+                customerLock.unlock();
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    /**
+     * Run an operation on a freelancer's current employment, holding the
+     * employing customer's stripe, the service lock and the freelancer stripe.
+     * The employing customer is read before locking and checked again after;
+     * if the employment changed in between, the locks are retaken.
+     */
+    private void withEmployment(String freelId, Runnable operation) {
+        Lock structure = enter();
+        try {
+            Freelancer freelancer = system.findFreelancer(freelId);
+            if (freelancer == null) {
+                operation.run();
+                return;
+            }
+            ReentrantLock serviceLock = serviceLocks.get(freelancer.service);
+            ReentrantLock freelancerLock = freelancerStripe(freelancer.handle);
+            while (true) {
+                int owner = freelancer.getCurrentCustomer();
+                ReentrantLock customerLock = owner >= 0 ? customerStripe(owner) : null;
+                if (customerLock != null) {
+                    customerLock.lock();
+                }
+                serviceLock.lock();
+                freelancerLock.lock();
+                try {
+                    if (freelancer.getCurrentCustomer() == owner) {
+                        operation.run();
+                        return;
+                    }
+                } finally {
+                    freelancerLock.unlock();
+                    serviceLock.unlock();
+                    if (customerLock != null) {
+                        customerLock.unlock();
+                    }
+                }
+            }
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    private ReentrantLock customerStripe(int handle) {
+        return customerStripes[handle & (STRIPES - 1)];
+    }
+
+    private ReentrantLock freelancerStripe(int handle) {
+        return freelancerStripes[handle & (STRIPES - 1)];
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.function.BiConsumer;
 
 /**
  * Custom HashMap implementation using ArrayList of buckets.
@@ -25,6 +26,12 @@ public class CustomHashMap<K, V> {
     // Number of key-value pairs currently stored
     private int size;
 
+    // Number of times the table was grown
+    private int rehashCount;
+
+    // Reusable cursor handed out by cursor(), created on first use
+    private Cursor cursor;
+
     // Starting capacity for the hash table
     private static final int INITIAL_CAPACITY = 16;
 
@@ -167,6 +174,78 @@ public class CustomHashMap<K, V> {
         return entries;
     }
 
+    /**
+     * Apply an action to every entry, walking the buckets in place.
+     * The action must not add or remove keys of this map.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < buckets.size(); i++) {
+            ArrayList<Entry<K, V>> bucket = buckets.get(i);
+            for (int j = 0; j < bucket.size(); j++) {
+                Entry<K, V> entry = bucket.get(j);
+                action.accept(entry.key, entry.value);
+            }
+        }
+    }
+
+    /**
+     * Get this map's reusable cursor, rewound to the first entry.
+     * The same instance is returned on every call, so only one walk over a map
+     * can be in progress at a time, and keys must not be added or removed during it.
+     */
+    public Cursor cursor() {
+        if (cursor == null) {
+            cursor = new Cursor();
+        }
+        cursor.bucket = 0;
+        cursor.index = -1;
+        cursor.current = null;
+        return cursor;
+    }
+
+    /**
+     * Allocation-free walk over the entries in place, bucket by bucket.
+     * Call next() before reading each entry.
+     */
+    public class Cursor {
+        private int bucket;
+        private int index;
+        private Entry<K, V> current;
+
+        /**
+         * Move to the next entry. Returns false once all entries have been visited.
+         */
+        public boolean next() {
+            index++;
+            while (bucket < buckets.size()) {
+                ArrayList<Entry<K, V>> chain = buckets.get(bucket);
+                if (index < chain.size()) {
+                    current = chain.get(index);
+                    return true;
+                }
+                bucket++;
+                index = 0;
+            }
+            current = null;
+            return false;
+        }
+
+        public K key() {
+            return current.key;
+        }
+
+        public V value() {
+            return current.value;
+        }
+
+        /**
+         * Replace the value of the current entry.
+         */
+        public void setValue(V value) {
+            current.value = value;
+        }
+    }
+
     /**
      * Remove all entries and reset to initial capacity.
      */
@@ -178,14 +257,34 @@ public class CustomHashMap<K, V> {
         size = 0;
     }
 
+    /**
+     * Structural statistics of the table: load, chain lengths, bucket occupancy
+     * and rehash count.
+     */
+    public HashMapStats stats() {
+        HashMapStats.Builder stats = new HashMapStats.Builder();
+        for (int i = 0; i < buckets.size(); i++) {
+            int chain = buckets.get(i).size();
+            stats.bucket(chain);
+            for (int position = 1; position <= chain; position++) {
+                stats.probe(position);
+            }
+        }
+        return stats.build(rehashCount);
+    }
+
     /**
      * Double the capacity and redistribute all entries.
      * Called automatically when load factor exceeds 0.75 to maintain performance.
      */
     private void rehash() {
+        GigMatchEvents.HashMapResize event = new GigMatchEvents.HashMapResize();
+        event.begin();
+        int entries = size;
         ArrayList<ArrayList<Entry<K, V>>> oldBuckets = buckets;
         buckets = new ArrayList<>();
         int newCapacity = oldBuckets.size() * 2;
+        rehashCount++;
 
         // Create new bucket array with doubled capacity
         for (int i = 0; i < newCapacity; i++) {
@@ -202,6 +301,13 @@ public class CustomHashMap<K, V> {
                 put(entry.key, entry.value);
             }
         }
+        if (event.shouldCommit()) {
+            event.mapType = "CustomHashMap";
+            event.oldCapacity = oldBuckets.size();
+            event.newCapacity = newCapacity;
+            event.entries = entries;
+            event.commit();
+        }
     }
 
     /**
@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-
 /**
  * Represents a customer in the GigMatch Pro system.
  * Customers hire freelancers, accumulate spending for loyalty tiers,
@@ -8,6 +6,9 @@ import java.util.ArrayList;
 public class Customer {
     String id;
 
+    // Dense int handle assigned by the customer IdRegistry (-1 until registered)
+    int handle;
+
     // Total amount customer has paid for completed jobs (after discounts)
     int totalSpent;
 
@@ -17,33 +18,91 @@ public class Customer {
     // Current loyalty tier: BRONZE, SILVER, GOLD, or PLATINUM
     String loyaltyTier;
 
-    // Personal blacklist - these freelancers won't appear in job requests
-    ArrayList<String> blacklistedFreelancers;
+    // Personal blacklist of freelancer handles - these freelancers won't appear in job requests.
+    // Hashed for O(1) lookups; null until the first entry since most customers never blacklist
+    IntHashSet blacklistedFreelancers;
 
-    // Currently active employments (freelancer IDs)
-    ArrayList<String> currentEmployments;
+    // Currently active employments (freelancer handles), first employmentCount slots used
+    int[] currentEmployments;
+    int employmentCount;
 
     // Total number of employments initiated (completed or not)
     int totalEmployments;
 
+    // Whether spending or penalties changed since the loyalty tier was last updated
+    boolean loyaltyDirty;
+
     /**
-     * Create a new customer with default BRONZE tier and empty lists.
+     * Create a new customer with default BRONZE tier, no blacklist and no employments.
      */
     public Customer(String id) {
         this.id = id;
+        this.handle = -1;
         this.totalSpent = 0;
         this.loyaltyPenalty = 0;
         this.loyaltyTier = "BRONZE";
-        this.blacklistedFreelancers = new ArrayList<>();
-        this.currentEmployments = new ArrayList<>();
+        this.blacklistedFreelancers = null;
+        this.currentEmployments = new int[2];
+        this.employmentCount = 0;
         this.totalEmployments = 0;
     }
 
     /**
      * Check if a freelancer is in this customer's personal blacklist.
      */
-    public boolean isBlacklisted(String freelancerId) {
-        return blacklistedFreelancers.contains(freelancerId);
+    public boolean isBlacklisted(int freelancerHandle) {
+        return blacklistedFreelancers != null && blacklistedFreelancers.contains(freelancerHandle);
+    }
+
+    /**
+     * Add a freelancer to this customer's personal blacklist.
+     */
+    public void addToBlacklist(int freelancerHandle) {
+        if (blacklistedFreelancers == null) {
+            blacklistedFreelancers = new IntHashSet();
+        }
+        blacklistedFreelancers.add(freelancerHandle);
+    }
+
+    /**
+     * Remove a freelancer from this customer's personal blacklist.
+     */
+    public void removeFromBlacklist(int freelancerHandle) {
+        if (blacklistedFreelancers != null) {
+            blacklistedFreelancers.remove(freelancerHandle);
+        }
+    }
+
+    /**
+     * Get the number of freelancers in this customer's personal blacklist.
+     */
+    public int getBlacklistCount() {
+        return blacklistedFreelancers == null ? 0 : blacklistedFreelancers.size();
+    }
+
+    /**
+     * Record an active employment of a freelancer.
+     */
+    public void addEmployment(int freelancerHandle) {
+        if (employmentCount == currentEmployments.length) {
+            int[] grown = new int[employmentCount * 2];
+            System.arraycopy(currentEmployments, 0, grown, 0, employmentCount);
+            currentEmployments = grown;
+        }
+        currentEmployments[employmentCount++] = freelancerHandle;
+    }
+
+    /**
+     * Drop an active employment of a freelancer, keeping the others in order.
+     */
+    public void removeEmployment(int freelancerHandle) {
+        for (int i = 0; i < employmentCount; i++) {
+            if (currentEmployments[i] == freelancerHandle) {
+                System.arraycopy(currentEmployments, i + 1, currentEmployments, i, employmentCount - i - 1);
+                employmentCount--;
+                return;
+            }
+        }
     }
 
     /**
@@ -59,15 +118,22 @@ public class Customer {
      * Called during monthly simulation.
      */
     public void updateLoyaltyTier() {
+        loyaltyTier = computeLoyaltyTier();
+    }
+
+    /**
+     * Loyalty tier for the current effective spending, without applying it.
+     */
+    String computeLoyaltyTier() {
         int effectiveSpending = Math.max(0, totalSpent - loyaltyPenalty);
         if (effectiveSpending >= 5000) {
-            loyaltyTier = "PLATINUM";
+            return "PLATINUM";
         } else if (effectiveSpending >= 2000) {
-            loyaltyTier = "GOLD";
+            return "GOLD";
         } else if (effectiveSpending >= 500) {
-            loyaltyTier = "SILVER";
+            return "SILVER";
         } else {
-            loyaltyTier = "BRONZE";
+            return "BRONZE";
         }
     }
 
@@ -2,75 +2,62 @@
  * Represents a freelancer in the GigMatch Pro system.
  * Freelancers offer services, maintain skill profiles, receive ratings,
  * and can experience burnout or platform blacklisting.
+ *
+ * The numeric state lives in a row of a columnar FreelancerStore; this object
+ * is a lightweight view holding the ID, service and ranking bookkeeping.
  */
 public class Freelancer {
     String id;
 
+    // Dense int handle assigned by the freelancer IdRegistry (-1 until registered)
+    int handle;
+
     // Current service type offered (can change via service change requests)
     String service;
 
-    // Price charged for the service
-    int price;
-
-    // Skill profile: [Technical, Communication, Creativity, Efficiency, Attention to Detail]
-    int[] skills;
-
-    // Cached sum of all skills for efficiency
-    int totalSkill;
-
-    // Number of successfully completed jobs
-    int completedJobs;
-
-    // Number of jobs cancelled by this freelancer
-    int cancelledJobs;
-
-    // Average rating (0.0 to 5.0), starts at 5.0 with one implicit review
-    double avrRating;
-
-    // Whether freelancer is currently available for work
-    boolean available;
-
-    // Burnout status (triggered by 5+ jobs in a month, affects composite score)
-    boolean burnout;
-
-    // Platform-level blacklist (permanent ban after 5+ cancellations in a month)
-    boolean platformBlacklisted;
-
-    // ID of customer currently employing this freelancer (null if available)
-    String currentCustomer;
+    // Columnar storage holding this freelancer's state, and the row used in it
+    final FreelancerStore store;
+    final int row;
 
     // Position in the max heap for efficient updates (-1 if not in heap)
     int heapIndex;
 
-    // Counter for jobs completed this month (for burnout tracking)
-    int jobsThisMonth;
-
-    // Counter for cancellations this month (for platform blacklist check)
-    int cancellationsThisMonth;
-
     // Most recently calculated composite score (cached for display)
     int lastCompositeScore;
 
     /**
-     * Create a new freelancer with specified service, price, and skill profile.
+     * Create a new freelancer backed by its own single-row store.
      * Freelancer starts available with 5.0 rating and no burnout.
      */
     public Freelancer(String id, String service, int price, int t, int c, int r, int e, int a) {
+        this(new FreelancerStore(1), id, service, price, t, c, r, e, a);
+    }
+
+    /**
+     * Create a new freelancer in a new row of a shared store.
+     * Freelancer starts available with 5.0 rating and no burnout.
+     */
+    public Freelancer(FreelancerStore store, String id, String service, int price,
+                      int t, int c, int r, int e, int a) {
         this.id = id;
+        this.handle = -1;
         this.service = service;
-        this.price = price;
-        this.skills = new int[]{t, c, r, e, a};
-        this.totalSkill = t + c + r + e + a;
-        this.completedJobs = 0;
-        this.cancelledJobs = 0;
-        this.avrRating = 5.0; // Starts with one implicit 5-star review
-        this.available = true;
-        this.burnout = false;
-        this.platformBlacklisted = false;
-        this.currentCustomer = null;
+        this.store = store;
+        this.row = store.addRow(price, t, c, r, e, a);
+        this.heapIndex = -1;
+        this.lastCompositeScore = 0;
+    }
+
+    /**
+     * Create a view over an existing row of a store (used when restoring a snapshot).
+     */
+    Freelancer(FreelancerStore store, int row, String id, String service) {
+        this.id = id;
+        this.handle = row;
+        this.service = service;
+        this.store = store;
+        this.row = row;
         this.heapIndex = -1;
-        this.jobsThisMonth = 0;
-        this.cancellationsThisMonth = 0;
         this.lastCompositeScore = 0;
     }
 
@@ -79,14 +66,122 @@ public class Freelancer {
      * New freelancers start with 5.0 (one implicit review).
      */
     public double getAverageRating() {
-        return avrRating;
+        return store.ratings[row];
+    }
+
+    public void setAverageRating(double rating) {
+        store.ratings[row] = rating;
+    }
+
+    public int getPrice() {
+        return store.price[row];
+    }
+
+    public void setPrice(int price) {
+        store.price[row] = price;
     }
 
     /**
-     * Recalculate and update the total skill points.
-     * Called after any skill modifications (gains, degradation, manual updates).
+     * Get one skill: 0 Technical, 1 Communication, 2 Creativity, 3 Efficiency, 4 Attention to Detail.
      */
-    public void updateTotalSkill() {
-        totalSkill = skills[0] + skills[1] + skills[2] + skills[3] + skills[4];
+    public int getSkill(int index) {
+        return store.skills[index][row];
+    }
+
+    public void setSkill(int index, int value) {
+        store.skills[index][row] = value;
+    }
+
+    /**
+     * Get the sum of all skills.
+     */
+    public int getTotalSkill() {
+        int[][] skills = store.skills;
+        return skills[0][row] + skills[1][row] + skills[2][row] + skills[3][row] + skills[4][row];
+    }
+
+    public int getCompletedJobs() {
+        return store.completedJobs[row];
+    }
+
+    public void setCompletedJobs(int completedJobs) {
+        store.completedJobs[row] = completedJobs;
+    }
+
+    public int getCancelledJobs() {
+        return store.cancelledJobs[row];
+    }
+
+    public void setCancelledJobs(int cancelledJobs) {
+        store.cancelledJobs[row] = cancelledJobs;
+    }
+
+    public int getJobsThisMonth() {
+        return store.jobsThisMonth[row];
+    }
+
+    public void setJobsThisMonth(int jobsThisMonth) {
+        store.jobsThisMonth[row] = jobsThisMonth;
+        if (jobsThisMonth != 0) {
+            store.markActive(row);
+        }
+    }
+
+    public int getCancellationsThisMonth() {
+        return store.cancellationsThisMonth[row];
+    }
+
+    public void setCancellationsThisMonth(int cancellationsThisMonth) {
+        store.cancellationsThisMonth[row] = cancellationsThisMonth;
+        if (cancellationsThisMonth != 0) {
+            store.markActive(row);
+        }
+    }
+
+    /**
+     * Get the handle of the customer currently employing this freelancer (-1 if available).
+     */
+    public int getCurrentCustomer() {
+        return store.currentCustomer[row];
+    }
+
+    public void setCurrentCustomer(int customerHandle) {
+        store.currentCustomer[row] = customerHandle;
+    }
+
+    /**
+     * Whether freelancer is currently available for work.
+     */
+    public boolean isAvailable() {
+        return store.hasFlag(row, FreelancerStore.AVAILABLE);
+    }
+
+    public void setAvailable(boolean available) {
+        store.setFlag(row, FreelancerStore.AVAILABLE, available);
+    }
+
+    /**
+     * Burnout status (triggered by 5+ jobs in a month, affects composite score).
+     */
+    public boolean isBurnout() {
+        return store.hasFlag(row, FreelancerStore.BURNOUT);
+    }
+
+    public void setBurnout(boolean burnout) {
+        store.setFlag(row, FreelancerStore.BURNOUT, burnout);
+        if (burnout) {
+            store.markActive(row);
+        }
+    }
+
+    /**
+     * Platform-level blacklist (permanent ban after 5+ cancellations in a month).
+     */
+    public boolean isPlatformBlacklisted() {
+        return store.hasFlag(row, FreelancerStore.PLATFORM_BLACKLISTED);
+    }
+
+    public void setPlatformBlacklisted(boolean platformBlacklisted) {
+        store.setFlag(row, FreelancerStore.PLATFORM_BLACKLISTED, platformBlacklisted);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Columnar (struct-of-arrays) storage for freelancer state.
+ * Each freelancer owns one row; every field lives in its own primitive array,
+ * so sweeps such as month-end burnout processing and composite score
+ * computation read contiguous memory instead of one heap object per freelancer.
+ * Freelancer objects are lightweight views holding a row index into a store.
+ */
+public class FreelancerStore {
+    // Flag bits packed into flags[row]
+    static final byte AVAILABLE = 1;
+    static final byte BURNOUT = 2;
+    static final byte PLATFORM_BLACKLISTED = 4;
+
+    // Set while the row is in the active list: it had jobs or cancellations this month, or is burned out
+    static final byte ACTIVE = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Price charged for the service
+    int[] price;
+
+    // Skill columns: skills[k][row] for [Technical, Communication, Creativity,
+    // Efficiency, Attention to Detail]
+    int[][] skills;
+
+    // Job counters (lifetime and current month)
+    int[] completedJobs;
+    int[] cancelledJobs;
+    int[] jobsThisMonth;
+    int[] cancellationsThisMonth;
+
+    // Handle of the employing customer, -1 if none
+    int[] currentCustomer;
+
+    // AVAILABLE | BURNOUT | PLATFORM_BLACKLISTED | ACTIVE
+    byte[] flags;
+
+    // Average rating (0.0 to 5.0)
+    double[] ratings;
+
+    // Number of rows in use
+    private int size;
+
+    // Rows that month-end processing has to visit (flagged ACTIVE), in marking order.
+    // Every other row has zero monthly counters and no burnout, so the month leaves it unchanged.
+    private int[] activeRows = new int[INITIAL_CAPACITY];
+    private int activeCount;
+
+    // Rows whose burnout status flipped in the last applyMonthlyBurnout
+    private int[] flippedRows = new int[INITIAL_CAPACITY];
+    private int flippedCount;
+
+    /**
+     * Create an empty store with room for a few rows.
+     */
+    public FreelancerStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an empty store with room for the given number of rows.
+     */
+    public FreelancerStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        price = new int[capacity];
+        skills = new int[5][capacity];
+        completedJobs = new int[capacity];
+        cancelledJobs = new int[capacity];
+        jobsThisMonth = new int[capacity];
+        cancellationsThisMonth = new int[capacity];
+        currentCustomer = new int[capacity];
+        flags = new byte[capacity];
+        ratings = new double[capacity];
+        size = 0;
+    }
+
+    /**
+     * Append a row for a new freelancer: available, 5.0 rating, no jobs.
+     * Returns the row index.
+     */
+    public int addRow(int rowPrice, int t, int c, int r, int e, int a) {
+        if (size == price.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        price[row] = rowPrice;
+        skills[0][row] = t;
+        skills[1][row] = c;
+        skills[2][row] = r;
+        skills[3][row] = e;
+        skills[4][row] = a;
+        completedJobs[row] = 0;
+        cancelledJobs[row] = 0;
+        jobsThisMonth[row] = 0;
+        cancellationsThisMonth[row] = 0;
+        currentCustomer[row] = -1;
+        flags[row] = AVAILABLE;
+        ratings[row] = 5.0; // Starts with one implicit 5-star review
+        return row;
+    }
+
+    /**
+     * Number of rows in use.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Make room for at least the given number of rows.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > price.length) {
+            grow(Math.max(capacity, price.length * 2));
+        }
+    }
+
+    private void grow(int capacity) {
+        price = copy(price, capacity);
+        for (int k = 0; k < 5; k++) {
+            skills[k] = copy(skills[k], capacity);
+        }
+        completedJobs = copy(completedJobs, capacity);
+        cancelledJobs = copy(cancelledJobs, capacity);
+        jobsThisMonth = copy(jobsThisMonth, capacity);
+        cancellationsThisMonth = copy(cancellationsThisMonth, capacity);
+        currentCustomer = copy(currentCustomer, capacity);
+        byte[] newFlags = new byte[capacity];
+        System.arraycopy(flags, 0, newFlags, 0, size);
+        flags = newFlags;
+        double[] newRatings = new double[capacity];
+        System.arraycopy(ratings, 0, newRatings, 0, size);
+        ratings = newRatings;
+    }
+
+    private int[] copy(int[] column, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(column, 0, grown, 0, size);
+        return grown;
+    }
+
+    boolean hasFlag(int row, byte flag) {
+        return (flags[row] & flag) != 0;
+    }
+
+    void setFlag(int row, byte flag, boolean value) {
+        if (value) {
+            flags[row] |= flag;
+        } else {
+            flags[row] &= ~flag;
+        }
+    }
+
+    /**
+     * Put a row on the active list for month-end processing, if it is not there yet.
+     * Called whenever a monthly counter becomes non-zero or burnout is set.
+     */
+    void markActive(int row) {
+        if ((flags[row] & ACTIVE) == 0) {
+            flags[row] |= ACTIVE;
+            appendActive(row);
+        }
+    }
+
+    // Synchronized because ConcurrentGigMatchSystem marks rows of different services in parallel
+    private synchronized void appendActive(int row) {
+        if (activeCount == activeRows.length) {
+            activeRows = Arrays.copyOf(activeRows, activeCount * 2);
+        }
+        activeRows[activeCount++] = row;
+    }
+
+    /**
+     * Month-end burnout pass over the active rows: 5+ jobs triggers burnout, 2 or
+     * fewer recovers, and the monthly counters are reset. Rows still burned out
+     * stay active for next month, since they can recover without any activity.
+     * Returns the number of rows whose burnout status flipped (see flippedRow).
+     */
+    public int applyMonthlyBurnout() {
+        if (flippedRows.length < activeCount) {
+            flippedRows = new int[activeCount];
+        }
+        flippedCount = 0;
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int row = activeRows[i];
+            byte f = flags[row];
+            boolean burnout = (f & BURNOUT) != 0;
+            int jobs = jobsThisMonth[row];
+
+            if ((!burnout && jobs >= 5) || (burnout && jobs <= 2)) {
+                f ^= BURNOUT;
+                flippedRows[flippedCount++] = row;
+            }
+            jobsThisMonth[row] = 0;
+            cancellationsThisMonth[row] = 0;
+            if ((f & BURNOUT) != 0) {
+                activeRows[kept++] = row;
+            } else {
+                f &= ~ACTIVE;
+            }
+            flags[row] = f;
+        }
+        activeCount = kept;
+        return flippedCount;
+    }
+
+    /**
+     * The i-th row flipped by the last applyMonthlyBurnout, in no particular order.
+     */
+    int flippedRow(int i) {
+        return flippedRows[i];
+    }
+
+    /**
+     * Number of rows on the active list.
+     */
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * Write every column (first size rows) to a snapshot.
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInts(price, size);
+        for (int k = 0; k < 5; k++) {
+            out.writeInts(skills[k], size);
+        }
+        out.writeInts(completedJobs, size);
+        out.writeInts(cancelledJobs, size);
+        out.writeInts(jobsThisMonth, size);
+        out.writeInts(cancellationsThisMonth, size);
+        out.writeInts(currentCustomer, size);
+        out.writeBytes(flags, 0, size);
+        out.writeDoubles(ratings, size);
+    }
+
+    /**
+     * Replace the contents of this store with the columns of a snapshot.
+     */
+    void readFrom(SnapshotInput in) throws IOException {
+        int rows = in.readInt();
+        size = 0;
+        ensureCapacity(rows);
+        in.readInts(price, rows);
+        for (int k = 0; k < 5; k++) {
+            in.readInts(skills[k], rows);
+        }
+        in.readInts(completedJobs, rows);
+        in.readInts(cancelledJobs, rows);
+        in.readInts(jobsThisMonth, rows);
+        in.readInts(cancellationsThisMonth, rows);
+        in.readInts(currentCustomer, rows);
+        in.readBytes(flags, 0, rows);
+        in.readDoubles(ratings, rows);
+        size = rows;
+
+        // The active list is derived state: rebuild it from the counters and burnout flags
+        activeCount = 0;
+        for (int row = 0; row < rows; row++) {
+            flags[row] &= ~ACTIVE;
+            if (jobsThisMonth[row] != 0 || cancellationsThisMonth[row] != 0 || (flags[row] & BURNOUT) != 0) {
+                markActive(row);
+            }
+        }
+    }
+}
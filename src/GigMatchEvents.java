@@ -0,0 +1,97 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom Java Flight Recorder events for the matching hot paths, so recordings
+ * show domain activity next to the JVM's own events. They are enabled like any
+ * JFR event, e.g. -XX:StartFlightRecording:settings=profile plus
+ * "gigmatch.*#enabled=true" in a .jfc file, or through JMC.
+ *
+ * Call sites follow the usual JFR pattern: create the event, begin(), do the
+ * work, then fill in fields and commit() only if shouldCommit(). When a
+ * recording does not enable an event, shouldCommit() is false, the allocation
+ * is scalar-replaced and the fields are never computed, so disabled events cost
+ * nothing measurable.
+ */
+final class GigMatchEvents {
+    private GigMatchEvents() {
+    }
+
+    @Name("gigmatch.RequestJob")
+    @Label("Request Job")
+    @Category({"GigMatch", "Matching"})
+    @Description("A job request: ranking the service's freelancers and auto-employing the best")
+    @StackTrace(false)
+    static class RequestJob extends Event {
+        @Label("Service")
+        String service;
+
+        @Label("Candidates Requested")
+        int k;
+
+        @Label("Candidates Scanned")
+        @Description("Ranking entries examined to find the candidates")
+        int scanned;
+
+        @Label("Rejected by Blacklist")
+        @Description("Examined entries skipped because the customer blacklisted them")
+        int blacklistRejected;
+
+        @Label("Candidates Found")
+        int found;
+    }
+
+    @Name("gigmatch.HeapRebuild")
+    @Label("Heap Rebuild")
+    @Category({"GigMatch", "Ranking"})
+    @Description("A MaxHeap restored as a whole after bulk insertions and removals")
+    @StackTrace(false)
+    static class HeapRebuild extends Event {
+        @Label("Entries")
+        int size;
+
+        @Label("Holes Compacted")
+        int holes;
+    }
+
+    @Name("gigmatch.HashMapResize")
+    @Label("Hash Map Resize")
+    @Category({"GigMatch", "Collections"})
+    @Description("A hash map growing its table")
+    @StackTrace(false)
+    static class HashMapResize extends Event {
+        @Label("Map Type")
+        String mapType;
+
+        @Label("Old Capacity")
+        int oldCapacity;
+
+        @Label("New Capacity")
+        int newCapacity;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Incremental")
+        @Description("Entries move over during later operations; the event only covers the allocation")
+        boolean incremental;
+    }
+
+    @Name("gigmatch.MonthPhase")
+    @Label("Month Phase")
+    @Category({"GigMatch", "Month"})
+    @Description("One phase of simulate_month")
+    @StackTrace(false)
+    static class MonthPhase extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Items")
+        @Description("Rows, freelancers, customers or service changes processed in the phase")
+        int items;
+    }
+}
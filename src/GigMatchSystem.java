@@ -1,4 +1,12 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Core system managing all operations for GigMatch Pro.
@@ -8,28 +16,223 @@ import java.util.ArrayList;
 public class GigMatchSystem {
 
     // Maps to store all users by ID
-    private CustomHashMap<String, Freelancer> freelancers;
-    private CustomHashMap<String, Customer> customers;
+    private OpenHashMap<String, Freelancer> freelancers;
+    private OpenHashMap<String, Customer> customers;
 
-    // Max heaps for each service type to efficiently rank freelancers
-    private CustomHashMap<String, MaxHeap> serviceHeaps;
+    // Ranking structure (max heap by default) for each service type to efficiently rank freelancers
+    private OpenHashMap<String, ServiceRanking> serviceHeaps;
 
     // Predefined skill profiles for each service type
-    private CustomHashMap<String, int[]> serviceProfiles;
+    private OpenHashMap<String, int[]> serviceProfiles;
 
     // Queue for service change requests to be applied at month end
-    private CustomHashMap<String, ServiceChangeRequest> pendingServiceChanges;
+    private OpenHashMap<String, ServiceChangeRequest> pendingServiceChanges;
+
+    // Per service, the removals plus insertions the pending changes will make in its ranking
+    private OpenHashMap<String, int[]> pendingRankingChanges;
+
+    // Columnar storage backing every registered freelancer
+    private FreelancerStore freelancerStore;
+
+    // Dense int handles for users; freelancer handles also carry lexicographic ID ranks
+    private IdRegistry<Freelancer> freelancerIds;
+    private IdRegistry<Customer> customerIds;
+
+    // Whether services are ranked with ScoreBucketIndex instead of MaxHeap
+    private final boolean bucketRanking;
+
+    // Snapshot file header and format version
+    private static final int SNAPSHOT_MAGIC = 0x474D534E; // "GMSN"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    // Loyalty tiers by their snapshot code
+    private static final String[] LOYALTY_TIERS = {"BRONZE", "SILVER", "GOLD", "PLATINUM"};
+
+    // Write-ahead journal of state changes, null when not journaling
+    private CommandJournal journal;
+
+    // Where the snapshot this system was restored from left the journal
+    // (generation and committed offset); -1 and -1 for a system that started empty
+    private long snapshotJournalGeneration = -1;
+    private long snapshotJournalPosition = -1;
+
+    // Whether month-end service changes may rebuild heavily changed rankings in bulk
+    private boolean bulkRebuild;
+
+    // Handles of customers whose spending or penalties changed this month (Customer.loyaltyDirty set)
+    private int[] dirtyCustomers = new int[16];
+    private int dirtyCustomerCount;
 
     public GigMatchSystem() {
-        freelancers = new CustomHashMap<>();
-        customers = new CustomHashMap<>();
-        serviceHeaps = new CustomHashMap<>();
-        serviceProfiles = new CustomHashMap<>();
-        pendingServiceChanges = new CustomHashMap<>();
+        this(false);
+    }
+
+    /**
+     * Create the system, optionally ranking each service with a score bucket
+     * queue (ScoreBucketIndex) instead of a max heap.
+     */
+    public GigMatchSystem(boolean bucketRanking) {
+        this.bucketRanking = bucketRanking;
+        // Resize the large user maps incrementally so registrations never stall on a full rehash
+        freelancers = new OpenHashMap<>(true);
+        customers = new OpenHashMap<>(true);
+        serviceHeaps = new OpenHashMap<>();
+        serviceProfiles = new OpenHashMap<>();
+        pendingServiceChanges = new OpenHashMap<>();
+        pendingRankingChanges = new OpenHashMap<>();
+        freelancerStore = new FreelancerStore();
+        freelancerIds = new IdRegistry<>(true);
+        customerIds = new IdRegistry<>(false);
         initializeServiceProfiles();
         initializeServiceHeaps();
     }
 
+    /**
+     * Let simulateMonth apply large batches of service changes, and
+     * registerFreelancers large batches of rows, by rebuilding each heavily
+     * changed ranking once (Floyd heapify for heaps) instead of moving
+     * freelancers one at a time. Off by default: rebuilt heaps get a different
+     * layout, and once a service change of an employed freelancer has left stale
+     * ranking entries behind, later results depend on that layout.
+     */
+    public void setBulkRebuild(boolean bulkRebuild) {
+        this.bulkRebuild = bulkRebuild;
+    }
+
+    /**
+     * Start (or stop, with null) journaling every state change to the given journal.
+     */
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Journal generation recorded by the snapshot this system was restored from
+     * (-1 if it was not restored). Passed to CommandJournal.replay with
+     * getSnapshotJournalPosition() so only the changes made after the snapshot are replayed.
+     */
+    public long getSnapshotJournalGeneration() {
+        return snapshotJournalGeneration;
+    }
+
+    /**
+     * Journal offset recorded by the snapshot this system was restored from,
+     * or -1 if the snapshot covers the whole generation (or there was none).
+     */
+    public long getSnapshotJournalPosition() {
+        return snapshotJournalPosition;
+    }
+
+    /**
+     * Look up a registered freelancer, or null.
+     */
+    Freelancer findFreelancer(String id) {
+        return freelancers.get(id);
+    }
+
+    /**
+     * Look up a registered customer, or null.
+     */
+    Customer findCustomer(String id) {
+        return customers.get(id);
+    }
+
+    /**
+     * Service names in service profile order.
+     */
+    ArrayList<String> serviceNames() {
+        return serviceProfiles.keySet();
+    }
+
+    /**
+     * Whether every service ranking is self-contained (see ServiceRanking.isSelfContained),
+     * i.e. each ranked freelancer has exactly one entry, in its own service's ranking.
+     */
+    boolean rankingsSelfContained() {
+        ArrayList<String> services = serviceProfiles.keySet();
+        for (int i = 0; i < services.size(); i++) {
+            if (!serviceHeaps.get(services.get(i)).isSelfContained(services.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check that employments agree between customers and freelancers, that
+     * month-end bookkeeping covers every freelancer and customer the month can
+     * change, and, when the rankings are self-contained, that every available,
+     * non-banned freelancer is ranked and ranking entries match ranked
+     * freelancers one to one. Throws IllegalStateException on the first violation.
+     */
+    void checkConsistency() {
+        int employed = 0;
+        for (int h = 0; h < freelancerIds.size(); h++) {
+            Freelancer f = freelancerIds.get(h);
+            int owner = f.getCurrentCustomer();
+            if (owner >= 0) {
+                employed++;
+                if (f.isAvailable()) {
+                    throw new IllegalStateException(f.id + " is employed but available");
+                }
+                Customer c = customerIds.get(owner);
+                boolean listed = false;
+                for (int i = 0; i < c.employmentCount && !listed; i++) {
+                    listed = c.currentEmployments[i] == h;
+                }
+                if (!listed) {
+                    throw new IllegalStateException(f.id + " is not among the employments of " + c.id);
+                }
+            }
+        }
+        int employments = 0;
+        for (int h = 0; h < customerIds.size(); h++) {
+            employments += customerIds.get(h).employmentCount;
+        }
+        if (employments != employed) {
+            throw new IllegalStateException(employments + " customer employments for " + employed
+                    + " employed freelancers");
+        }
+
+        for (int h = 0; h < freelancerIds.size(); h++) {
+            Freelancer f = freelancerIds.get(h);
+            if ((f.getJobsThisMonth() != 0 || f.getCancellationsThisMonth() != 0 || f.isBurnout())
+                    && !freelancerStore.hasFlag(f.row, FreelancerStore.ACTIVE)) {
+                throw new IllegalStateException(f.id + " changes at month end but is not active");
+            }
+        }
+        for (int h = 0; h < customerIds.size(); h++) {
+            Customer c = customerIds.get(h);
+            if (!c.loyaltyDirty && !c.loyaltyTier.equals(c.computeLoyaltyTier())) {
+                throw new IllegalStateException(c.id + " has a stale loyalty tier but is not queued");
+            }
+        }
+
+        if (!rankingsSelfContained()) {
+            return;
+        }
+        // Service changes move employed freelancers into their new ranking too,
+        // so ranked freelancers are not necessarily eligible
+        int rankedFreelancers = 0;
+        for (int h = 0; h < freelancerIds.size(); h++) {
+            Freelancer f = freelancerIds.get(h);
+            if (f.heapIndex >= 0) {
+                rankedFreelancers++;
+            } else if (f.isAvailable() && !f.isPlatformBlacklisted()) {
+                throw new IllegalStateException(f.id + " is eligible but not ranked");
+            }
+        }
+        int ranked = 0;
+        ArrayList<String> services = serviceProfiles.keySet();
+        for (int i = 0; i < services.size(); i++) {
+            ranked += serviceHeaps.get(services.get(i)).size();
+        }
+        if (ranked != rankedFreelancers) {
+            throw new IllegalStateException(ranked + " ranking entries for " + rankedFreelancers
+                    + " ranked freelancers");
+        }
+    }
+
     /**
      * Initialize skill requirement profiles for all 10 service types.
      * Format: [Technical, Communication, Creativity, Efficiency, Attention to Detail]
@@ -48,13 +251,20 @@ public class GigMatchSystem {
     }
 
     /**
-     * Create a max heap for each service type to maintain ranked freelancer lists.
+     * Create a max heap (or score bucket index) for each service type to maintain
+     * ranked freelancer lists.
      */
     private void initializeServiceHeaps() {
         ArrayList<String> services = serviceProfiles.keySet();
         for (int i = 0; i < services.size(); i++) {
             String service = services.get(i);
-            serviceHeaps.put(service, new MaxHeap(serviceProfiles.get(service)));
+            int[] profile = serviceProfiles.get(service);
+            pendingRankingChanges.put(service, new int[1]);
+            if (bucketRanking) {
+                serviceHeaps.put(service, new ScoreBucketIndex(profile, freelancerIds));
+            } else {
+                serviceHeaps.put(service, new MaxHeap(profile, freelancerIds));
+            }
         }
     }
 
@@ -62,11 +272,23 @@ public class GigMatchSystem {
      * Register a new customer with unique ID.
      */
     public String registerCustomer(String id) {
+        OutputSink out = new OutputSink();
+        registerCustomer(id, out);
+        return out.toString();
+    }
+
+    public void registerCustomer(String id, OutputSink out) {
         if (customers.containsKey(id) || freelancers.containsKey(id)) {
-            return "Some error occurred in register_customer.";
+            out.append("Some error occurred in register_customer.");
+            return;
         }
-        customers.put(id, new Customer(id));
-        return "registered customer " + id;
+        Customer customer = new Customer(id);
+        customer.handle = customerIds.register(id, customer);
+        customers.put(id, customer);
+        if (journal != null) {
+            journal.begin(CommandParser.OP_REGISTER_CUSTOMER).string(id).end();
+        }
+        out.append("registered customer ").append(id);
     }
 
     /**
@@ -75,27 +297,174 @@ public class GigMatchSystem {
      */
     public String registerFreelancer(String id, String service, int price,
                                      int t, int c, int r, int e, int a) {
+        OutputSink out = new OutputSink();
+        registerFreelancer(id, service, price, t, c, r, e, a, out);
+        return out.toString();
+    }
+
+    public void registerFreelancer(String id, String service, int price,
+                                   int t, int c, int r, int e, int a, OutputSink out) {
+        int mark = out.length();
         try {
             // Check for ID conflicts
             if (freelancers.containsKey(id) || customers.containsKey(id)) {
-                return "Some error occurred in register_freelancer.";
+                out.append("Some error occurred in register_freelancer.");
+                return;
             }
 
             // Validate service exists, price is positive, and all skills are in [0,100]
-            if (!serviceProfiles.containsKey(service) || price <= 0 ||
-                    t < 0 || t > 100 || c < 0 || c > 100 || r < 0 || r > 100 ||
-                    e < 0 || e > 100 || a < 0 || a > 100) {
-                return "Some error occurred in register_freelancer.";
+            if (!isValidRegistration(service, price, t, c, r, e, a)) {
+                out.append("Some error occurred in register_freelancer.");
+                return;
             }
 
-            Freelancer freelancer = new Freelancer(id, service, price, t, c, r, e, a);
-            freelancers.put(id, freelancer);
-            serviceHeaps.get(service).insert(freelancer);
-
-            return "registered freelancer " + id;
+            addFreelancer(id, service, price, t, c, r, e, a);
         } catch (Exception ex) {
-            return "Some error occurred in register_freelancer.";
+            out.setLength(mark);
+            out.append("Some error occurred in register_freelancer.");
+            return;
+        }
+
+        if (journal != null) {
+            journal.begin(CommandParser.OP_REGISTER_FREELANCER).string(id).string(service).integer(price)
+                    .integer(t).integer(c).integer(r).integer(e).integer(a).end();
+        }
+        out.append("registered freelancer ").append(id);
+    }
+
+    private boolean isValidRegistration(String service, int price, int t, int c, int r, int e, int a) {
+        return serviceProfiles.containsKey(service) && price > 0 &&
+                t >= 0 && t <= 100 && c >= 0 && c <= 100 && r >= 0 && r <= 100 &&
+                e >= 0 && e <= 100 && a >= 0 && a <= 100;
+    }
+
+    private void addFreelancer(String id, String service, int price, int t, int c, int r, int e, int a) {
+        Freelancer freelancer = new Freelancer(freelancerStore, id, service, price, t, c, r, e, a);
+        freelancer.handle = freelancerIds.register(id, freelancer);
+        freelancers.put(id, freelancer);
+        serviceHeaps.get(service).insert(freelancer);
+    }
+
+    /**
+     * Register a batch of freelancers. values holds six integers per row
+     * (price, T, C, R, E, A).
+     */
+    public String registerFreelancers(String[] ids, String[] services, int[] values, int rows) {
+        OutputSink out = new OutputSink();
+        registerFreelancers(ids, services, values, rows, out);
+        return out.toString();
+    }
+
+    /**
+     * Register a batch of freelancers as if each row went through registerFreelancer
+     * in order: one output line per row with the same messages, and the same map
+     * order. The batch is validated first so the freelancer map, columns and ID
+     * registry are grown once. With setBulkRebuild, a ranking receiving many rows
+     * is appended to and heapified once (while the rankings are self-contained)
+     * instead of taking a sift-up per row.
+     */
+    public void registerFreelancers(String[] ids, String[] services, int[] values, int rows, OutputSink out) {
+        // Rows that registerFreelancer would accept in order: valid against the current
+        // state and not repeating an ID accepted earlier in the batch
+        boolean[] valid = new boolean[rows];
+        int validRows = 0;
+        OpenHashMap<String, int[]> serviceRows = new OpenHashMap<>();
+        OpenHashMap<String, Boolean> batchIds = new OpenHashMap<>();
+        for (int i = 0; i < rows; i++) {
+            int v = 6 * i;
+            try {
+                valid[i] = !freelancers.containsKey(ids[i]) && !customers.containsKey(ids[i]) &&
+                        !batchIds.containsKey(ids[i]) &&
+                        isValidRegistration(services[i], values[v], values[v + 1], values[v + 2],
+                                values[v + 3], values[v + 4], values[v + 5]);
+            } catch (Exception ex) {
+                valid[i] = false;
+            }
+            if (valid[i]) {
+                validRows++;
+                batchIds.put(ids[i], Boolean.TRUE);
+                int[] count = serviceRows.get(services[i]);
+                if (count == null) {
+                    count = new int[1];
+                    serviceRows.put(services[i], count);
+                }
+                count[0]++;
+            }
+        }
+
+        int expected = freelancers.size() + validRows;
+        freelancers.ensureCapacity(expected);
+        freelancerIds.ensureCapacity(expected);
+        freelancerStore.ensureCapacity(expected);
+
+        ArrayList<ServiceRanking> rebuilt = beginRegistrationRebuilds(serviceRows);
+        int registered = 0;
+        try {
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    out.newLine();
+                }
+                int v = 6 * i;
+                if (!valid[i]) {
+                    out.append("Some error occurred in register_freelancer.");
+                    continue;
+                }
+                // A failing row reports its error and the batch goes on, as registerFreelancer does
+                int mark = out.length();
+                try {
+                    addFreelancer(ids[i], services[i], values[v], values[v + 1], values[v + 2],
+                            values[v + 3], values[v + 4], values[v + 5]);
+                    registered++;
+                    out.append("registered freelancer ").append(ids[i]);
+                } catch (Exception ex) {
+                    out.setLength(mark);
+                    out.append("Some error occurred in register_freelancer.");
+                }
+            }
+        } finally {
+            // Rankings must leave bulk mode and registered rows must reach the journal
+            // even if the batch stops early, or rankings stay unordered and recovery loses rows
+            for (int i = 0; i < rebuilt.size(); i++) {
+                rebuilt.get(i).endBulk();
+            }
+            if (journal != null && registered > 0) {
+                journal.begin(CommandParser.OP_REGISTER_FREELANCERS).integer(rows);
+                for (int i = 0; i < rows; i++) {
+                    journal.string(ids[i]).string(services[i]);
+                    for (int k = 6 * i; k < 6 * i + 6; k++) {
+                        journal.integer(values[k]);
+                    }
+                }
+                journal.end();
+            }
+        }
+    }
+
+    /**
+     * Put the rankings that a registration batch adds many rows to into bulk mode
+     * (see setBulkRebuild), under the same conditions as beginServiceChangeRebuilds.
+     * Returns the rankings to end.
+     */
+    private ArrayList<ServiceRanking> beginRegistrationRebuilds(OpenHashMap<String, int[]> serviceRows) {
+        ArrayList<ServiceRanking> rebuilt = new ArrayList<>();
+        if (!bulkRebuild) {
+            return rebuilt;
+        }
+        ArrayList<String> batchServices = serviceRows.keySet();
+        for (int i = 0; i < batchServices.size(); i++) {
+            ServiceRanking ranking = serviceHeaps.get(batchServices.get(i));
+            if (ranking.prefersRebuild(serviceRows.get(batchServices.get(i))[0])) {
+                rebuilt.add(ranking);
+            }
+        }
+        if (rebuilt.isEmpty() || !rankingsSelfContained()) {
+            rebuilt.clear();
+            return rebuilt;
+        }
+        for (int i = 0; i < rebuilt.size(); i++) {
+            rebuilt.get(i).beginBulk();
         }
+        return rebuilt;
     }
 
     /**
@@ -103,29 +472,40 @@ public class GigMatchSystem {
      * Checks availability, blacklist status, and updates employment records.
      */
     public String employ(String custId, String freelId) {
+        OutputSink out = new OutputSink();
+        employ(custId, freelId, out);
+        return out.toString();
+    }
+
+    public void employ(String custId, String freelId, OutputSink out) {
         if (!customers.containsKey(custId) || !freelancers.containsKey(freelId)) {
-            return "Some error occurred in employ.";
+            out.append("Some error occurred in employ.");
+            return;
         }
 
         Customer customer = customers.get(custId);
         Freelancer freelancer = freelancers.get(freelId);
 
         // Verify freelancer is available and not blacklisted
-        if (!freelancer.available || freelancer.platformBlacklisted ||
-                customer.isBlacklisted(freelId)) {
-            return "Some error occurred in employ.";
+        if (!freelancer.isAvailable() || freelancer.isPlatformBlacklisted() ||
+                customer.isBlacklisted(freelancer.handle)) {
+            out.append("Some error occurred in employ.");
+            return;
         }
 
         // Mark freelancer as employed and remove from available pool
-        freelancer.available = false;
+        freelancer.setAvailable(false);
         serviceHeaps.get(freelancer.service).remove(freelancer);
-        freelancer.currentCustomer = custId;
+        freelancer.setCurrentCustomer(customer.handle);
 
         // Update customer employment records
-        customer.currentEmployments.add(freelId);
+        customer.addEmployment(freelancer.handle);
         customer.totalEmployments++;
 
-        return custId + " employed " + freelId + " for " + freelancer.service;
+        if (journal != null) {
+            journal.begin(CommandParser.OP_EMPLOY_FREELANCER).string(custId).string(freelId).end();
+        }
+        out.append(custId).append(" employed ").append(freelId).append(" for ").append(freelancer.service);
     }
 
     /**
@@ -133,51 +513,96 @@ public class GigMatchSystem {
      * Filters by availability and blacklist, ranks by composite score.
      */
     public String requestJob(String custId, String service, int numCandidates) {
+        OutputSink out = new OutputSink();
+        requestJob(custId, service, numCandidates, out);
+        return out.toString();
+    }
+
+    public void requestJob(String custId, String service, int numCandidates, OutputSink out) {
         if (!customers.containsKey(custId) || !serviceProfiles.containsKey(service)) {
-            return "Some error occurred in request_job.";
+            out.append("Some error occurred in request_job.");
+            return;
         }
 
+        GigMatchEvents.RequestJob event = new GigMatchEvents.RequestJob();
+        event.begin();
         Customer customer = customers.get(custId);
         ArrayList<Freelancer> candidates = getEligibleFreelancers(service, customer, numCandidates);
+        finishRequestJob(customer, service, numCandidates, candidates, out);
+        if (event.shouldCommit()) {
+            ServiceRanking ranking = serviceHeaps.get(service);
+            event.service = service;
+            event.k = numCandidates;
+            event.scanned = ranking.lastScanned();
+            event.blacklistRejected = ranking.lastBlacklistRejected();
+            event.found = candidates.size();
+            event.commit();
+        }
+    }
 
+    /**
+     * Second half of a job request, once the candidates have been ranked:
+     * report them and auto-employ the best one.
+     */
+    void finishRequestJob(Customer customer, String service, int numCandidates,
+                          ArrayList<Freelancer> candidates, OutputSink out) {
+        String custId = customer.id;
         if (candidates.isEmpty()) {
-            return "no freelancers available";
+            out.append("no freelancers available");
+            return;
         }
 
-        // Build output showing top candidates
-        StringBuilder result = new StringBuilder();
-        result.append("available freelancers for ").append(service)
+        // Write output showing top candidates
+        out.append("available freelancers for ").append(service)
                 .append(" (top ").append(numCandidates).append("):\n");
 
         int displayCount = Math.min(numCandidates, candidates.size());
         for (int i = 0; i < displayCount; i++) {
             Freelancer f = candidates.get(i);
-            result.append(f.id).append(" - composite: ").append(f.lastCompositeScore)
-                    .append(", price: ").append(f.price)
-                    .append(", rating: ").append(String.format("%.1f", f.getAverageRating()));
-            if (i < displayCount - 1) result.append("\n");
+            out.append(f.id).append(" - composite: ").append(f.lastCompositeScore)
+                    .append(", price: ").append(f.getPrice())
+                    .append(", rating: ").appendOneDecimal(f.getAverageRating());
+            if (i < displayCount - 1) out.append('\n');
         }
 
         // Auto-employ the best freelancer
         Freelancer best = candidates.get(0);
-        best.available = false;
-        serviceHeaps.get(service).remove(best);
-        best.currentCustomer = custId;
-        customer.currentEmployments.add(best.id);
-        customer.totalEmployments++;
+        autoEmploy(customer, service, best);
 
-        result.append("\nauto-employed best freelancer: ").append(best.id)
+        // Journaled as its outcome, so replay does not need to rank candidates again
+        if (journal != null) {
+            journal.begin(CommandParser.OP_REQUEST_JOB).string(custId).string(service).string(best.id).end();
+        }
+        out.append("\nauto-employed best freelancer: ").append(best.id)
                 .append(" for customer ").append(custId);
+    }
 
-        return result.toString();
+    /**
+     * Employ the freelancer picked by a job request, removing it from the
+     * requested service's ranking.
+     */
+    private void autoEmploy(Customer customer, String service, Freelancer best) {
+        best.setAvailable(false);
+        serviceHeaps.get(service).remove(best);
+        best.setCurrentCustomer(customer.handle);
+        customer.addEmployment(best.handle);
+        customer.totalEmployments++;
+    }
+
+    /**
+     * Re-apply the outcome of a journaled job request: the customer employs the
+     * freelancer that was picked from the service's ranking.
+     */
+    void replayRequestJob(String custId, String service, String freelId) {
+        autoEmploy(customers.get(custId), service, freelancers.get(freelId));
     }
 
     /**
      * Get eligible freelancers from heap, filtering out blacklisted ones.
      */
-    private ArrayList<Freelancer> getEligibleFreelancers(String service, Customer customer, int needed) {
-        MaxHeap heap = serviceHeaps.get(service);
-        return (ArrayList<Freelancer>) heap.getTopEligibleFreelancers(needed, customer);
+    ArrayList<Freelancer> getEligibleFreelancers(String service, Customer customer, int needed) {
+        ServiceRanking heap = serviceHeaps.get(service);
+        return heap.getTopEligibleFreelancers(needed, customer);
     }
 
     /**
@@ -185,26 +610,34 @@ public class GigMatchSystem {
      * if rating >= 4, processes payment with loyalty discount, and marks freelancer available.
      */
     public String completeAndRate(String freelId, int rating) {
+        OutputSink out = new OutputSink();
+        completeAndRate(freelId, rating, out);
+        return out.toString();
+    }
+
+    public void completeAndRate(String freelId, int rating, OutputSink out) {
         if (!freelancers.containsKey(freelId) || rating < 0 || rating > 5) {
-            return "Some error occurred in complete_and_rate.";
+            out.append("Some error occurred in complete_and_rate.");
+            return;
         }
 
         Freelancer freelancer = freelancers.get(freelId);
-        if (freelancer.currentCustomer == null || freelancer.available) {
-            return "Some error occurred in complete_and_rate.";
+        if (freelancer.getCurrentCustomer() < 0 || freelancer.isAvailable()) {
+            out.append("Some error occurred in complete_and_rate.");
+            return;
         }
 
-        String custId = freelancer.currentCustomer;
-        Customer customer = customers.get(custId);
+        Customer customer = customerIds.get(freelancer.getCurrentCustomer());
+        String custId = customer.id;
 
         // Update average rating using weighted formula
         double oldAvg = freelancer.getAverageRating();
-        int n = freelancer.completedJobs + freelancer.cancelledJobs;
+        int n = freelancer.getCompletedJobs() + freelancer.getCancelledJobs();
         double newAvg = (oldAvg * (n+1) + rating) / (n + 2);
-        freelancer.avrRating = newAvg;
+        freelancer.setAverageRating(newAvg);
 
-        freelancer.completedJobs++;
-        freelancer.jobsThisMonth++;
+        freelancer.setCompletedJobs(freelancer.getCompletedJobs() + 1);
+        freelancer.setJobsThisMonth(freelancer.getJobsThisMonth() + 1);
 
         // Apply skill gains for high-quality work
         if (rating >= 4) {
@@ -212,17 +645,22 @@ public class GigMatchSystem {
         }
 
         // Process payment with loyalty discount
-        int payment = calculateCustomerPayment(customer, freelancer.price);
+        int payment = calculateCustomerPayment(customer, freelancer.getPrice());
         customer.totalSpent += payment;
+        markLoyaltyDirty(customer);
 
         // Mark freelancer available and update heap
-        freelancer.available = true;
-        freelancer.currentCustomer = null;
-        customer.currentEmployments.remove(freelId);
+        freelancer.setAvailable(true);
+        freelancer.setCurrentCustomer(-1);
+        customer.removeEmployment(freelancer.handle);
 
         serviceHeaps.get(freelancer.service).insert(freelancer);
 
-        return freelId + " completed job for " + custId + " with rating " + rating;
+        if (journal != null) {
+            journal.begin(CommandParser.OP_COMPLETE_AND_RATE).string(freelId).integer(rating).end();
+        }
+        out.append(freelId).append(" completed job for ").append(custId)
+                .append(" with rating ").append(rating);
     }
 
     /**
@@ -286,11 +724,9 @@ public class GigMatchSystem {
         int secondary2 = sortedIndices.get(2);
 
         // Apply gains with cap at 100
-        f.skills[primary] = Math.min(100, f.skills[primary] + 2);
-        f.skills[secondary1] = Math.min(100, f.skills[secondary1] + 1);
-        f.skills[secondary2] = Math.min(100, f.skills[secondary2] + 1);
-
-        f.updateTotalSkill();
+        f.setSkill(primary, Math.min(100, f.getSkill(primary) + 2));
+        f.setSkill(secondary1, Math.min(100, f.getSkill(secondary1) + 1));
+        f.setSkill(secondary2, Math.min(100, f.getSkill(secondary2) + 1));
     }
 
     /**
@@ -298,26 +734,39 @@ public class GigMatchSystem {
      * customer loses loyalty points (penalty applied).
      */
     public String cancelByCustomer(String custId, String freelId) {
+        OutputSink out = new OutputSink();
+        cancelByCustomer(custId, freelId, out);
+        return out.toString();
+    }
+
+    public void cancelByCustomer(String custId, String freelId, OutputSink out) {
         if (!customers.containsKey(custId) || !freelancers.containsKey(freelId)) {
-            return "Some error occurred in cancel_by_customer.";
+            out.append("Some error occurred in cancel_by_customer.");
+            return;
         }
 
         Customer customer = customers.get(custId);
         Freelancer freelancer = freelancers.get(freelId);
 
         // Verify active employment exists
-        if (freelancer.currentCustomer == null || !freelancer.currentCustomer.equals(custId)) {
-            return "Some error occurred in cancel_by_customer.";
+        if (freelancer.getCurrentCustomer() != customer.handle) {
+            out.append("Some error occurred in cancel_by_customer.");
+            return;
         }
 
         // Release freelancer and apply loyalty penalty
-        freelancer.available = true;
+        freelancer.setAvailable(true);
         serviceHeaps.get(freelancer.service).insert(freelancer);
-        freelancer.currentCustomer = null;
-        customer.currentEmployments.remove(freelId);
+        freelancer.setCurrentCustomer(-1);
+        customer.removeEmployment(freelancer.handle);
         customer.loyaltyPenalty += 250;
+        markLoyaltyDirty(customer);
+
+        if (journal != null) {
+            journal.begin(CommandParser.OP_CANCEL_BY_CUSTOMER).string(custId).string(freelId).end();
+        }
 
-        return "cancelled by customer: " + custId + " cancelled " + freelId;
+        out.append("cancelled by customer: ").append(custId).append(" cancelled ").append(freelId);
     }
 
     /**
@@ -325,67 +774,102 @@ public class GigMatchSystem {
      * skill degradation (-3 to all skills), and checks for platform blacklist.
      */
     public String cancelByFreelancer(String freelId) {
+        OutputSink out = new OutputSink();
+        cancelByFreelancer(freelId, out);
+        return out.toString();
+    }
+
+    public void cancelByFreelancer(String freelId, OutputSink out) {
         if (!freelancers.containsKey(freelId)) {
-            return "Some error occurred in cancel_by_freelancer.";
+            out.append("Some error occurred in cancel_by_freelancer.");
+            return;
         }
 
         Freelancer freelancer = freelancers.get(freelId);
-        if (freelancer.currentCustomer == null || freelancer.available) {
-            return "Some error occurred in cancel_by_freelancer.";
+        if (freelancer.getCurrentCustomer() < 0 || freelancer.isAvailable()) {
+            out.append("Some error occurred in cancel_by_freelancer.");
+            return;
         }
 
-        String custId = freelancer.currentCustomer;
-        Customer customer = customers.get(custId);
+        Customer customer = customerIds.get(freelancer.getCurrentCustomer());
+        String custId = customer.id;
 
         // Apply zero-star rating to average
         double oldAvg = freelancer.getAverageRating();
-        int n = freelancer.completedJobs + freelancer.cancelledJobs;
+        int n = freelancer.getCompletedJobs() + freelancer.getCancelledJobs();
         double newAvg = (oldAvg * (n+1) + 0) / (n + 2);
-        freelancer.avrRating = newAvg;
+        freelancer.setAverageRating(newAvg);
 
-        freelancer.cancelledJobs++;
-        freelancer.cancellationsThisMonth++;
+        freelancer.setCancelledJobs(freelancer.getCancelledJobs() + 1);
+        freelancer.setCancellationsThisMonth(freelancer.getCancellationsThisMonth() + 1);
 
         // Apply skill degradation penalty
         for (int i = 0; i < 5; i++) {
-            freelancer.skills[i] = Math.max(0, freelancer.skills[i] - 3);
+            freelancer.setSkill(i, Math.max(0, freelancer.getSkill(i) - 3));
         }
-        freelancer.updateTotalSkill();
 
-        freelancer.available = true;
-        freelancer.currentCustomer = null;
-        customer.currentEmployments.remove(freelId);
+        freelancer.setAvailable(true);
+        freelancer.setCurrentCustomer(-1);
+        customer.removeEmployment(freelancer.handle);
 
-        StringBuilder result = new StringBuilder();
-        result.append("cancelled by freelancer: ").append(freelId)
+        if (journal != null) {
+            journal.begin(CommandParser.OP_CANCEL_BY_FREELANCER).string(freelId).end();
+        }
+        out.append("cancelled by freelancer: ").append(freelId)
                 .append(" cancelled ").append(custId);
 
         // Platform blacklist if 5+ cancellations this month
-        if (freelancer.cancellationsThisMonth >= 5 && !freelancer.platformBlacklisted) {
-            freelancer.platformBlacklisted = true;
-            result.append("\nplatform banned freelancer: ").append(freelId);
+        if (freelancer.getCancellationsThisMonth() >= 5 && !freelancer.isPlatformBlacklisted()) {
+            freelancer.setPlatformBlacklisted(true);
+            out.append("\nplatform banned freelancer: ").append(freelId);
         } else {
             // Re-insert with updated stats
             serviceHeaps.get(freelancer.service).insert(freelancer);
         }
-
-        return result.toString();
     }
 
     /**
      * Queue a service change request to be applied at month end.
      */
     public String changeService(String freelId, String newService, int newPrice) {
+        OutputSink out = new OutputSink();
+        changeService(freelId, newService, newPrice, out);
+        return out.toString();
+    }
+
+    public void changeService(String freelId, String newService, int newPrice, OutputSink out) {
         if (!freelancers.containsKey(freelId) || !serviceProfiles.containsKey(newService) || newPrice <= 0) {
-            return "Some error occurred in change_service.";
+            out.append("Some error occurred in change_service.");
+            return;
         }
 
         Freelancer freelancer = freelancers.get(freelId);
         String oldService = freelancer.service;
 
-        pendingServiceChanges.put(freelId, new ServiceChangeRequest(newService, newPrice));
+        queueServiceChange(freelancer, new ServiceChangeRequest(newService, newPrice));
+
+        if (journal != null) {
+            journal.begin(CommandParser.OP_CHANGE_SERVICE).string(freelId).string(newService)
+                    .integer(newPrice).end();
+        }
 
-        return "service change for " + freelId + " queued from " + oldService + " to " + newService;
+        out.append("service change for ").append(freelId).append(" queued from ").append(oldService)
+                .append(" to ").append(newService);
+    }
+
+    /**
+     * Queue (or replace) a freelancer's pending service change, keeping the
+     * per-service ranking change counts in step.
+     */
+    private void queueServiceChange(Freelancer freelancer, ServiceChangeRequest request) {
+        ServiceChangeRequest previous = pendingServiceChanges.get(freelancer.id);
+        if (previous != null) {
+            pendingRankingChanges.get(previous.service)[0]--;
+        } else {
+            pendingRankingChanges.get(freelancer.service)[0]++;
+        }
+        pendingRankingChanges.get(request.service)[0]++;
+        pendingServiceChanges.put(freelancer.id, request);
     }
 
     /**
@@ -395,127 +879,258 @@ public class GigMatchSystem {
      * 3. Queued service changes
      */
     public String simulateMonth() {
-        // Process burnout for all freelancers
-        ArrayList<Freelancer> allFreelancers = freelancers.values();
-        for (int i = 0; i < allFreelancers.size(); i++) {
-            Freelancer f = allFreelancers.get(i);
-            boolean oldBurnout = f.burnout;
+        OutputSink out = new OutputSink();
+        simulateMonth(out);
+        return out.toString();
+    }
 
-            // Trigger burnout if 5+ jobs this month
-            if (!f.burnout && f.jobsThisMonth >= 5) {
-                f.burnout = true;
+    /**
+     * Queue a customer for a loyalty tier update at the next month end.
+     * Synchronized because ConcurrentGigMatchSystem settles payments of
+     * different customers in parallel.
+     */
+    private synchronized void markLoyaltyDirty(Customer customer) {
+        if (!customer.loyaltyDirty) {
+            customer.loyaltyDirty = true;
+            if (dirtyCustomerCount == dirtyCustomers.length) {
+                dirtyCustomers = Arrays.copyOf(dirtyCustomers, dirtyCustomerCount * 2);
             }
-            // Recover from burnout if 2 or fewer jobs
-            else if (f.burnout && f.jobsThisMonth <= 2) {
-                f.burnout = false;
+            dirtyCustomers[dirtyCustomerCount++] = customer.handle;
+        }
+    }
+
+    /**
+     * Put the rankings that the pending service changes touch heavily into bulk
+     * mode, so the moves are applied as one rebuild per ranking instead of a sift
+     * each (see setBulkRebuild). Rankings are only rebuilt while every ranking is
+     * self-contained, since removals of stale entries go by position. Returns the
+     * rankings to end.
+     */
+    private ArrayList<ServiceRanking> beginServiceChangeRebuilds() {
+        ArrayList<ServiceRanking> rebuilt = new ArrayList<>();
+        if (!bulkRebuild || pendingServiceChanges.size() == 0) {
+            return rebuilt;
+        }
+        ArrayList<String> services = serviceProfiles.keySet();
+        for (int i = 0; i < services.size(); i++) {
+            ServiceRanking ranking = serviceHeaps.get(services.get(i));
+            if (ranking.prefersRebuild(pendingRankingChanges.get(services.get(i))[0])) {
+                rebuilt.add(ranking);
             }
+        }
+        if (rebuilt.isEmpty() || !rankingsSelfContained()) {
+            rebuilt.clear();
+            return rebuilt;
+        }
+        for (int i = 0; i < rebuilt.size(); i++) {
+            rebuilt.get(i).beginBulk();
+        }
+        return rebuilt;
+    }
 
-            // Update heap if burnout status changed (affects composite score)
-            if (oldBurnout != f.burnout) {
+    public void simulateMonth(OutputSink out) {
+        // Burnout transitions and monthly counter resets stream through the freelancer columns
+        GigMatchEvents.MonthPhase phase = new GigMatchEvents.MonthPhase();
+        phase.begin();
+        int activeRows = freelancerStore.activeCount();
+        int burnoutChanges = freelancerStore.applyMonthlyBurnout();
+        commitPhase(phase, "burnout", activeRows);
+
+        // Update heaps of freelancers whose burnout status changed (affects composite score),
+        // in map order since heap layout depends on the order of updates. Map order is
+        // home slot, then insertion order, and rows are handed out in insertion order,
+        // so sorting (home, row) pairs reproduces it without walking the whole map.
+        phase = new GigMatchEvents.MonthPhase();
+        phase.begin();
+        if (burnoutChanges > 0) {
+            long[] order = new long[burnoutChanges];
+            for (int i = 0; i < burnoutChanges; i++) {
+                int row = freelancerStore.flippedRow(i);
+                order[i] = ((long) freelancers.homeOf(freelancerIds.idOf(row)) << 32) | row;
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < burnoutChanges; i++) {
+                Freelancer f = freelancerIds.get((int) order[i]);
                 serviceHeaps.get(f.service).updateFreelancer(f);
             }
-
-            // Reset monthly counters
-            f.jobsThisMonth = 0;
-            f.cancellationsThisMonth = 0;
         }
-
-        // Update customer loyalty tiers based on total spending
-        ArrayList<Customer> allCustomers = customers.values();
-        for (int i = 0; i < allCustomers.size(); i++) {
-            allCustomers.get(i).updateLoyaltyTier();
+        commitPhase(phase, "burnout ranking updates", burnoutChanges);
+
+        // Update loyalty tiers of the customers whose spending changed this month
+        phase = new GigMatchEvents.MonthPhase();
+        phase.begin();
+        int loyaltyUpdates = dirtyCustomerCount;
+        for (int i = 0; i < dirtyCustomerCount; i++) {
+            Customer c = customerIds.get(dirtyCustomers[i]);
+            c.loyaltyDirty = false;
+            c.updateLoyaltyTier();
         }
+        dirtyCustomerCount = 0;
+        commitPhase(phase, "loyalty tiers", loyaltyUpdates);
 
         // Apply all queued service changes
-        ArrayList<CustomHashMap.MapEntry<String, ServiceChangeRequest>> entries = new ArrayList<>();
-        ArrayList<String> keys = pendingServiceChanges.keySet();
-        for (int i = 0; i < keys.size(); i++) {
-            String key = keys.get(i);
-            entries.add(new CustomHashMap.MapEntry<>(key, pendingServiceChanges.get(key)));
+        phase = new GigMatchEvents.MonthPhase();
+        phase.begin();
+        int serviceChanges = pendingServiceChanges.size();
+        ArrayList<ServiceRanking> rebuilt = beginServiceChangeRebuilds();
+        try {
+            OpenHashMap<String, ServiceChangeRequest>.Cursor changeCursor = pendingServiceChanges.cursor();
+            while (changeCursor.next()) {
+                ServiceChangeRequest request = changeCursor.value();
+                Freelancer f = freelancers.get(changeCursor.key());
+
+                // Move freelancer to new service heap
+                serviceHeaps.get(f.service).remove(f);
+                f.service = request.service;
+                f.setPrice(request.price);
+                serviceHeaps.get(f.service).insert(f);
+            }
+        } finally {
+            for (int i = 0; i < rebuilt.size(); i++) {
+                rebuilt.get(i).endBulk();
+            }
         }
+        pendingServiceChanges.clear();
+        pendingRankingChanges.forEach((service, count) -> count[0] = 0);
+        commitPhase(phase, "service changes", serviceChanges);
 
-        for (int i = 0; i < entries.size(); i++) {
-            CustomHashMap.MapEntry<String, ServiceChangeRequest> entry = entries.get(i);
-            String freelId = entry.getKey();
-            ServiceChangeRequest request = entry.getValue();
-            Freelancer f = freelancers.get(freelId);
-
-            // Move freelancer to new service heap
-            serviceHeaps.get(f.service).remove(f);
-            f.service = request.service;
-            f.price = request.price;
-            serviceHeaps.get(f.service).insert(f);
+        if (journal != null) {
+            journal.begin(CommandParser.OP_SIMULATE_MONTH).end();
         }
-        pendingServiceChanges.clear();
 
-        return "month complete";
+        out.append("month complete");
+    }
+
+    private static void commitPhase(GigMatchEvents.MonthPhase event, String phase, int items) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.items = items;
+            event.commit();
+        }
     }
 
     /**
      * Query freelancer details: service, price, rating, jobs, skills, availability, burnout.
      */
     public String queryFreelancer(String freelId) {
-        if (!freelancers.containsKey(freelId)) {
-            return "Some error occurred in query_freelancer.";
-        }
+        OutputSink out = new OutputSink();
+        queryFreelancer(freelId, out);
+        return out.toString();
+    }
 
+    public void queryFreelancer(String freelId, OutputSink out) {
         Freelancer f = freelancers.get(freelId);
-        return String.format("%s: %s, price: %d, rating: %.1f, completed: %d, cancelled: %d, " +
-                        "skills: (%d,%d,%d,%d,%d), available: %s, burnout: %s",
-                f.id, f.service, f.price, f.getAverageRating(),
-                f.completedJobs, f.cancelledJobs,
-                f.skills[0], f.skills[1], f.skills[2], f.skills[3], f.skills[4],
-                f.available ? "yes" : "no",
-                f.burnout ? "yes" : "no");
+        if (f == null) {
+            out.append("Some error occurred in query_freelancer.");
+            return;
+        }
+        QueryFormatter.appendFreelancer(out, f);
     }
 
     /**
      * Query customer details: total spent, loyalty tier, blacklist count, total employments.
      */
     public String queryCustomer(String custId) {
-        if (!customers.containsKey(custId)) {
-            return "Some error occurred in query_customer.";
-        }
+        OutputSink out = new OutputSink();
+        queryCustomer(custId, out);
+        return out.toString();
+    }
 
+    public void queryCustomer(String custId, OutputSink out) {
         Customer c = customers.get(custId);
-        return String.format("%s: total spent: $%d, loyalty tier: %s, blacklisted freelancer count: %d, " +
-                        "total employment count: %d",
-                c.id, c.totalSpent, c.getLoyaltyTier(),
-                c.blacklistedFreelancers.size(), c.totalEmployments);
+        if (c == null) {
+            out.append("Some error occurred in query_customer.");
+            return;
+        }
+        QueryFormatter.appendCustomer(out, c);
+    }
+
+    /**
+     * Report the structure of the hash maps (load, chain and probe lengths,
+     * bucket occupancy, resizes) and of each service ranking, one line each.
+     */
+    public String stats() {
+        OutputSink out = new OutputSink();
+        stats(out);
+        return out.toString();
+    }
+
+    public void stats(OutputSink out) {
+        appendMapStats(out, "freelancers", freelancers.stats());
+        out.append('\n');
+        appendMapStats(out, "customers", customers.stats());
+        out.append('\n');
+        appendMapStats(out, "pending service changes", pendingServiceChanges.stats());
+        out.append('\n');
+        appendMapStats(out, "service rankings", serviceHeaps.stats());
+        ArrayList<String> services = serviceProfiles.keySet();
+        for (int i = 0; i < services.size(); i++) {
+            out.append("\nranking ").append(services.get(i)).append(": ");
+            serviceHeaps.get(services.get(i)).appendStats(out);
+        }
+    }
+
+    private static void appendMapStats(OutputSink out, String name, HashMapStats stats) {
+        out.append("map ").append(name).append(": ");
+        stats.appendTo(out);
     }
 
     /**
      * Add freelancer to customer's personal blacklist.
      */
     public String blacklist(String custId, String freelId) {
+        OutputSink out = new OutputSink();
+        blacklist(custId, freelId, out);
+        return out.toString();
+    }
+
+    public void blacklist(String custId, String freelId, OutputSink out) {
         if (!customers.containsKey(custId) || !freelancers.containsKey(freelId)) {
-            return "Some error occurred in blacklist.";
+            out.append("Some error occurred in blacklist.");
+            return;
         }
 
         Customer customer = customers.get(custId);
-        if (customer.isBlacklisted(freelId)) {
-            return "Some error occurred in blacklist.";
+        Freelancer freelancer = freelancers.get(freelId);
+        if (customer.isBlacklisted(freelancer.handle)) {
+            out.append("Some error occurred in blacklist.");
+            return;
         }
 
-        customer.blacklistedFreelancers.add(freelId);
-        return custId + " blacklisted " + freelId;
+        customer.addToBlacklist(freelancer.handle);
+        if (journal != null) {
+            journal.begin(CommandParser.OP_BLACKLIST).string(custId).string(freelId).end();
+        }
+        out.append(custId).append(" blacklisted ").append(freelId);
     }
 
     /**
      * Remove freelancer from customer's personal blacklist.
      */
     public String unblacklist(String custId, String freelId) {
+        OutputSink out = new OutputSink();
+        unblacklist(custId, freelId, out);
+        return out.toString();
+    }
+
+    public void unblacklist(String custId, String freelId, OutputSink out) {
         if (!customers.containsKey(custId) || !freelancers.containsKey(freelId)) {
-            return "Some error occurred in unblacklist.";
+            out.append("Some error occurred in unblacklist.");
+            return;
         }
 
         Customer customer = customers.get(custId);
-        if (!customer.isBlacklisted(freelId)) {
-            return "Some error occurred in unblacklist.";
+        Freelancer freelancer = freelancers.get(freelId);
+        if (!customer.isBlacklisted(freelancer.handle)) {
+            out.append("Some error occurred in unblacklist.");
+            return;
         }
 
-        customer.blacklistedFreelancers.remove(freelId);
-        return custId + " unblacklisted " + freelId;
+        customer.removeFromBlacklist(freelancer.handle);
+        if (journal != null) {
+            journal.begin(CommandParser.OP_UNBLACKLIST).string(custId).string(freelId).end();
+        }
+        out.append(custId).append(" unblacklisted ").append(freelId);
     }
 
     /**
@@ -523,23 +1138,258 @@ public class GigMatchSystem {
      * and updates position in heap.
      */
     public String updateSkill(String freelId, int t, int c, int r, int e, int a) {
+        OutputSink out = new OutputSink();
+        updateSkill(freelId, t, c, r, e, a, out);
+        return out.toString();
+    }
+
+    public void updateSkill(String freelId, int t, int c, int r, int e, int a, OutputSink out) {
         if (!freelancers.containsKey(freelId) ||
                 t < 0 || t > 100 || c < 0 || c > 100 || r < 0 || r > 100 ||
                 e < 0 || e > 100 || a < 0 || a > 100) {
-            return "Some error occurred in update_skill.";
+            out.append("Some error occurred in update_skill.");
+            return;
         }
 
         Freelancer f = freelancers.get(freelId);
-        f.skills[0] = t;
-        f.skills[1] = c;
-        f.skills[2] = r;
-        f.skills[3] = e;
-        f.skills[4] = a;
-        f.updateTotalSkill();
+        f.setSkill(0, t);
+        f.setSkill(1, c);
+        f.setSkill(2, r);
+        f.setSkill(3, e);
+        f.setSkill(4, a);
 
         // Update heap position with new composite score
         serviceHeaps.get(f.service).updateFreelancer(f);
 
-        return "updated skills of " + freelId + " for " + f.service;
+        if (journal != null) {
+            journal.begin(CommandParser.OP_UPDATE_SKILL).string(freelId)
+                    .integer(t).integer(c).integer(r).integer(e).integer(a).end();
+        }
+        out.append("updated skills of ").append(freelId).append(" for ").append(f.service);
+    }
+
+    /**
+     * Write the full engine state to a binary snapshot file, streamed through a FileChannel.
+     * Sections, in order: freelancer registry (IDs, order labels, sorted blocks),
+     * freelancer store columns, per-freelancer service/heap position/score columns,
+     * customer IDs and columns, blacklists, service rankings (heap arrays in place)
+     * and pending service changes. Services are written as indices into the
+     * service profile key order.
+     *
+     * The header records the journal generation and committed offset the state
+     * corresponds to (generation 0 and offset -1, covering a whole empty
+     * generation, when not journaling), so recovery replays only later records.
+     * The file is written beside the target, forced and moved over it, so a
+     * crash never leaves a partial snapshot in its place.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             SnapshotOutput out = new SnapshotOutput(channel)) {
+            long journalGeneration = 0;
+            long journalPosition = -1;
+            if (journal != null) {
+                journal.commit();
+                journalGeneration = journal.getGeneration();
+                journalPosition = journal.getPosition();
+            }
+
+            ArrayList<String> services = serviceProfiles.keySet();
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(journalGeneration);
+            out.writeLong(journalPosition);
+            out.writeBoolean(bucketRanking);
+
+            // Freelancers: handle h owns store row h
+            int freelancerCount = freelancerIds.size();
+            freelancerIds.writeTo(out);
+            freelancerStore.writeTo(out);
+            for (int h = 0; h < freelancerCount; h++) {
+                Freelancer f = freelancerIds.get(h);
+                if (f.row != h) {
+                    throw new IllegalStateException("Freelancer " + f.id
+                            + " is not stored in its handle's row");
+                }
+                out.writeInt(services.indexOf(f.service));
+            }
+            for (int h = 0; h < freelancerCount; h++) {
+                out.writeInt(freelancerIds.get(h).heapIndex);
+            }
+            for (int h = 0; h < freelancerCount; h++) {
+                out.writeInt(freelancerIds.get(h).lastCompositeScore);
+            }
+
+            // Customers
+            int customerCount = customerIds.size();
+            customerIds.writeTo(out);
+            for (int h = 0; h < customerCount; h++) {
+                out.writeInt(customerIds.get(h).totalSpent);
+            }
+            for (int h = 0; h < customerCount; h++) {
+                out.writeInt(customerIds.get(h).loyaltyPenalty);
+            }
+            for (int h = 0; h < customerCount; h++) {
+                out.writeInt(customerIds.get(h).totalEmployments);
+            }
+            for (int h = 0; h < customerCount; h++) {
+                out.writeByte(tierCode(customerIds.get(h).loyaltyTier));
+            }
+            for (int h = 0; h < customerCount; h++) {
+                Customer c = customerIds.get(h);
+                out.writeInt(c.employmentCount);
+                out.writeInts(c.currentEmployments, c.employmentCount);
+            }
+            for (int h = 0; h < customerCount; h++) {
+                IntHashSet blacklist = customerIds.get(h).blacklistedFreelancers;
+                out.writeBoolean(blacklist != null);
+                if (blacklist != null) {
+                    blacklist.writeTo(out);
+                }
+            }
+
+            // Rankings in service order
+            for (int i = 0; i < services.size(); i++) {
+                serviceHeaps.get(services.get(i)).writeTo(out);
+            }
+
+            // Pending service changes in map order
+            out.writeInt(pendingServiceChanges.size());
+            OpenHashMap<String, ServiceChangeRequest>.Cursor changeCursor = pendingServiceChanges.cursor();
+            while (changeCursor.next()) {
+                out.writeInt(freelancers.get(changeCursor.key()).handle);
+                out.writeInt(services.indexOf(changeCursor.value().service));
+                out.writeInt(changeCursor.value().price);
+            }
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Create a system from a snapshot written by writeSnapshot. Rankings are
+     * restored in place and the maps are refilled in registration order, so the
+     * restored system behaves exactly like the one that was saved.
+     */
+    public static GigMatchSystem readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SnapshotInput in = new SnapshotInput(channel);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a GigMatch snapshot (or unsupported version): " + path);
+            }
+            long journalGeneration = in.readLong();
+            long journalPosition = in.readLong();
+            GigMatchSystem system = new GigMatchSystem(in.readBoolean());
+            system.snapshotJournalGeneration = journalGeneration;
+            system.snapshotJournalPosition = journalPosition;
+            system.restore(in);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Corrupt snapshot: missing end marker in " + path);
+            }
+            return system;
+        }
+    }
+
+    private void restore(SnapshotInput in) throws IOException {
+        ArrayList<String> services = serviceProfiles.keySet();
+
+        // Freelancers
+        freelancerIds.readFrom(in);
+        freelancerStore.readFrom(in);
+        int freelancerCount = freelancerIds.size();
+        if (freelancerStore.size() != freelancerCount) {
+            throw new IOException("Corrupt snapshot: " + freelancerStore.size() + " store rows for "
+                    + freelancerCount + " freelancers");
+        }
+        String[] freelancerKeys = new String[freelancerCount];
+        Freelancer[] freelancerValues = new Freelancer[freelancerCount];
+        for (int h = 0; h < freelancerCount; h++) {
+            Freelancer f = new Freelancer(freelancerStore, h, freelancerIds.idOf(h),
+                    services.get(in.readInt()));
+            freelancerIds.bind(h, f);
+            freelancerKeys[h] = f.id;
+            freelancerValues[h] = f;
+        }
+        freelancers.putAllNew(freelancerKeys, freelancerValues, freelancerCount);
+        for (int h = 0; h < freelancerCount; h++) {
+            freelancerIds.get(h).heapIndex = in.readInt();
+        }
+        for (int h = 0; h < freelancerCount; h++) {
+            freelancerIds.get(h).lastCompositeScore = in.readInt();
+        }
+
+        // Customers
+        customerIds.readFrom(in);
+        int customerCount = customerIds.size();
+        String[] customerKeys = new String[customerCount];
+        Customer[] customerValues = new Customer[customerCount];
+        for (int h = 0; h < customerCount; h++) {
+            Customer c = new Customer(customerIds.idOf(h));
+            c.handle = h;
+            customerIds.bind(h, c);
+            customerKeys[h] = c.id;
+            customerValues[h] = c;
+        }
+        customers.putAllNew(customerKeys, customerValues, customerCount);
+        for (int h = 0; h < customerCount; h++) {
+            customerIds.get(h).totalSpent = in.readInt();
+        }
+        for (int h = 0; h < customerCount; h++) {
+            customerIds.get(h).loyaltyPenalty = in.readInt();
+        }
+        for (int h = 0; h < customerCount; h++) {
+            customerIds.get(h).totalEmployments = in.readInt();
+        }
+        for (int h = 0; h < customerCount; h++) {
+            Customer c = customerIds.get(h);
+            c.loyaltyTier = LOYALTY_TIERS[in.readByte()];
+            // Saved mid-month: the tier catches up with the spending at the next month end
+            if (!c.loyaltyTier.equals(c.computeLoyaltyTier())) {
+                markLoyaltyDirty(c);
+            }
+        }
+        for (int h = 0; h < customerCount; h++) {
+            Customer c = customerIds.get(h);
+            int count = in.readInt();
+            if (count > c.currentEmployments.length) {
+                c.currentEmployments = new int[count];
+            }
+            in.readInts(c.currentEmployments, count);
+            c.employmentCount = count;
+        }
+        for (int h = 0; h < customerCount; h++) {
+            if (in.readBoolean()) {
+                customerIds.get(h).blacklistedFreelancers = IntHashSet.readFrom(in);
+            }
+        }
+
+        // Rankings
+        for (int i = 0; i < services.size(); i++) {
+            serviceHeaps.get(services.get(i)).readFrom(in, freelancerIds);
+        }
+
+        // Pending service changes, re-added in their original iteration order
+        int pending = in.readInt();
+        for (int i = 0; i < pending; i++) {
+            String freelId = freelancerIds.idOf(in.readInt());
+            String service = services.get(in.readInt());
+            queueServiceChange(freelancers.get(freelId), new ServiceChangeRequest(service, in.readInt()));
+        }
+    }
+
+    private static int tierCode(String tier) {
+        for (int i = 0; i < LOYALTY_TIERS.length; i++) {
+            if (LOYALTY_TIERS[i].equals(tier)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown loyalty tier " + tier);
     }
-}
\ No newline at end of file
+}
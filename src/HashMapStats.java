@@ -0,0 +1,117 @@
+import java.util.Locale;
+
+/**
+ * Structural statistics of a hash table, from CustomHashMap.stats() or
+ * OpenHashMap.stats(). Both maps hash keys to a home bucket the same way
+ * (Math.abs(hashCode) reduced to the capacity), so chain lengths, the keys
+ * sharing each home, are comparable between them and show how well the hash
+ * spreads the keys. Probe length is the number of keys compared by a successful
+ * lookup: the position in the chain, or the distance from the home slot plus one.
+ */
+public class HashMapStats {
+    // Chains of this length or more share the last histogram entry
+    static final int HISTOGRAM_LIMIT = 8;
+
+    // Buckets (home slots) in the table
+    public final int capacity;
+
+    // Keys stored
+    public final int size;
+
+    // Times the table was grown
+    public final int resizes;
+
+    // Longest chain and largest probe length over all keys
+    public final int maxChain;
+    public final int maxProbe;
+
+    // occupancy[k]: buckets holding k keys (the last entry counts HISTOGRAM_LIMIT or more)
+    public final long[] occupancy;
+
+    private final long totalProbe;
+
+    HashMapStats(int capacity, int size, int resizes, int maxChain, int maxProbe, long totalProbe,
+                 long[] occupancy) {
+        this.capacity = capacity;
+        this.size = size;
+        this.resizes = resizes;
+        this.maxChain = maxChain;
+        this.maxProbe = maxProbe;
+        this.totalProbe = totalProbe;
+        this.occupancy = occupancy;
+    }
+
+    public double loadFactor() {
+        return capacity == 0 ? 0 : (double) size / capacity;
+    }
+
+    /**
+     * Mean chain length over the buckets holding at least one key.
+     */
+    public double meanChain() {
+        long used = capacity - occupancy[0];
+        return used == 0 ? 0 : (double) size / used;
+    }
+
+    /**
+     * Mean probe length of a successful lookup, over all keys.
+     */
+    public double meanProbe() {
+        return size == 0 ? 0 : (double) totalProbe / size;
+    }
+
+    /**
+     * Append a one-line summary: load, chains, probes, resizes and the occupancy histogram.
+     */
+    void appendTo(OutputSink out) {
+        out.append("size ").append(size).append(", capacity ").append(capacity)
+                .append(", load ").append(String.format(Locale.US, "%.2f", loadFactor()))
+                .append(", resizes ").append(resizes)
+                .append(", chain max ").append(maxChain)
+                .append(" mean ").append(String.format(Locale.US, "%.2f", meanChain()))
+                .append(", probe max ").append(maxProbe)
+                .append(" mean ").append(String.format(Locale.US, "%.2f", meanProbe()))
+                .append(", occupancy");
+        for (int k = 0; k < occupancy.length; k++) {
+            out.append(' ').append(k);
+            if (k == occupancy.length - 1) {
+                out.append('+');
+            }
+            out.append(':').append(Long.toString(occupancy[k]));
+        }
+    }
+
+    /**
+     * Collects chain lengths one bucket at a time and probe lengths one key at a time.
+     */
+    static class Builder {
+        private final long[] occupancy = new long[HISTOGRAM_LIMIT + 1];
+        private int buckets;
+        private int keys;
+        private int maxChain;
+        private int maxProbe;
+        private long totalProbe;
+
+        /**
+         * Count a bucket (home slot) holding the given number of keys.
+         */
+        void bucket(int chain) {
+            buckets++;
+            keys += chain;
+            occupancy[Math.min(chain, HISTOGRAM_LIMIT)]++;
+            maxChain = Math.max(maxChain, chain);
+        }
+
+        /**
+         * Count the probe length of one key.
+         */
+        void probe(int length) {
+            totalProbe += length;
+            maxProbe = Math.max(maxProbe, length);
+        }
+
+        HashMapStats build(int resizes) {
+            return new HashMapStats(buckets, keys, resizes, maxChain, maxProbe, totalProbe, occupancy);
+        }
+    }
+}
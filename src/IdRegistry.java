@@ -0,0 +1,409 @@
+import java.io.IOException;
+
+/**
+ * Assigns dense int handles to entity IDs in registration order, so internal
+ * structures can refer to freelancers and customers by int instead of String.
+ *
+ * A ranked registry also maintains a long order label per handle with
+ * rankOf(a) < rankOf(b) exactly when ID a sorts before ID b (String.compareTo).
+ * Labels are kept with gaps between neighbours; a new ID takes a label between
+ * its predecessor and successor, and when that gap is used up the smallest
+ * sufficiently sparse label range around it is respaced. Relabeling never changes
+ * relative order, so structures ordered by rank stay valid. Sorted order is
+ * tracked in fixed-size blocks of handles so an insertion only shifts one block.
+ */
+public class IdRegistry<T> {
+    // handle -> ID and handle -> entity
+    private String[] ids;
+    private Object[] entities;
+
+    // handle -> order label (ranked registries only)
+    private long[] ranks;
+
+    // Number of handles assigned
+    private int size;
+
+    // Whether lexicographic ranks are maintained
+    private final boolean ranked;
+
+    // Handles in ID order, split into blocks of at most BLOCK_CAPACITY
+    private int[][] blocks;
+    private int[] blockSizes;
+    private int blockCount;
+
+    // Position of the most recent insertion in the blocks
+    private int insertBlock;
+    private int insertPos;
+
+    // Number of times labels had to be respaced
+    private int relabelCount;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int BLOCK_CAPACITY = 512;
+
+    // Labels are drawn from [0, LABEL_SPACE)
+    private static final int LABEL_BITS = 62;
+    private static final long LABEL_SPACE = 1L << LABEL_BITS;
+
+    // Label distance left between an ID added before the smallest or after the largest and its neighbour
+    private static final long APPEND_GAP = 1L << 32;
+
+    // Density threshold base for local relabeling, between 1 and 2
+    private static final double DENSITY_BASE = 1.4;
+
+    /**
+     * Create an empty registry, optionally maintaining lexicographic ranks.
+     */
+    public IdRegistry(boolean ranked) {
+        this.ranked = ranked;
+        this.ids = new String[INITIAL_CAPACITY];
+        this.entities = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+        if (ranked) {
+            this.ranks = new long[INITIAL_CAPACITY];
+            this.blocks = new int[INITIAL_CAPACITY][];
+            this.blockSizes = new int[INITIAL_CAPACITY];
+            this.blockCount = 0;
+        }
+    }
+
+    /**
+     * Assign the next handle to a new ID. The caller guarantees the ID is not registered yet.
+     */
+    public int register(String id, T entity) {
+        if (size == ids.length) {
+            grow(ids.length * 2);
+        }
+        int handle = size++;
+        ids[handle] = id;
+        entities[handle] = entity;
+        if (ranked) {
+            insertRanked(handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Get the entity registered under a handle.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int handle) {
+        return (T) entities[handle];
+    }
+
+    /**
+     * Get the ID registered under a handle.
+     */
+    public String idOf(int handle) {
+        return ids[handle];
+    }
+
+    /**
+     * Get the order label of a handle (ranked registries only).
+     */
+    public long rankOf(int handle) {
+        return ranks[handle];
+    }
+
+    /**
+     * Compare two handles by ID: negative if a's ID sorts first (ranked registries only).
+     */
+    public int compare(int a, int b) {
+        return Long.compare(ranks[a], ranks[b]);
+    }
+
+    /**
+     * Number of handles assigned.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of times a range of labels was respaced.
+     */
+    public int getRelabelCount() {
+        return relabelCount;
+    }
+
+    /**
+     * Make room for the given number of handles without further growth.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            grow(Math.max(capacity, ids.length * 2));
+        }
+    }
+
+    private void grow(int capacity) {
+        String[] newIds = new String[capacity];
+        Object[] newEntities = new Object[capacity];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        System.arraycopy(entities, 0, newEntities, 0, size);
+        ids = newIds;
+        entities = newEntities;
+        if (ranked) {
+            long[] newRanks = new long[capacity];
+            System.arraycopy(ranks, 0, newRanks, 0, size);
+            ranks = newRanks;
+        }
+    }
+
+    /**
+     * Place a new handle in sorted order and give it a label between its neighbours.
+     */
+    private void insertRanked(int handle) {
+        String id = ids[handle];
+
+        if (blockCount == 0) {
+            blocks[0] = new int[BLOCK_CAPACITY];
+            blocks[0][0] = handle;
+            blockSizes[0] = 1;
+            blockCount = 1;
+            ranks[handle] = LABEL_SPACE / 2;
+            return;
+        }
+
+        // Last block whose first ID sorts before the new ID (or the first block)
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (ids[blocks[mid][0]].compareTo(id) < 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int b = lo;
+        int[] block = blocks[b];
+        int count = blockSizes[b];
+
+        // Position inside the block
+        int p = 0;
+        int q = count;
+        while (p < q) {
+            int mid = (p + q) >>> 1;
+            if (ids[block[mid]].compareTo(id) < 0) {
+                p = mid + 1;
+            } else {
+                q = mid;
+            }
+        }
+
+        int pred = p > 0 ? block[p - 1] : (b > 0 ? blocks[b - 1][blockSizes[b - 1] - 1] : -1);
+        int succ = p < count ? block[p] : (b + 1 < blockCount ? blocks[b + 1][0] : -1);
+
+        insertIntoBlock(b, p, handle);
+
+        long below = pred >= 0 ? ranks[pred] : -1;
+        long above = succ >= 0 ? ranks[succ] : LABEL_SPACE;
+        if (above - below > 1) {
+            if (succ < 0) {
+                ranks[handle] = below + Math.min(APPEND_GAP, (above - below) / 2);
+            } else if (pred < 0) {
+                ranks[handle] = above - Math.min(APPEND_GAP, (above - below) / 2);
+            } else {
+                ranks[handle] = below + (above - below) / 2;
+            }
+            return;
+        }
+        relabelAround(Math.max(below, 0));
+    }
+
+    /**
+     * Insert a handle at position p of block b, splitting the block when full.
+     * Leaves the handle's final position in insertBlock/insertPos.
+     */
+    private void insertIntoBlock(int b, int p, int handle) {
+        int[] block = blocks[b];
+        int count = blockSizes[b];
+
+        if (count == BLOCK_CAPACITY) {
+            if (blockCount == blocks.length) {
+                int[][] newBlocks = new int[blockCount * 2][];
+                int[] newSizes = new int[blockCount * 2];
+                System.arraycopy(blocks, 0, newBlocks, 0, blockCount);
+                System.arraycopy(blockSizes, 0, newSizes, 0, blockCount);
+                blocks = newBlocks;
+                blockSizes = newSizes;
+            }
+            System.arraycopy(blocks, b + 1, blocks, b + 2, blockCount - b - 1);
+            System.arraycopy(blockSizes, b + 1, blockSizes, b + 2, blockCount - b - 1);
+            blockCount++;
+
+            int half = count / 2;
+            int[] upper = new int[BLOCK_CAPACITY];
+            System.arraycopy(block, half, upper, 0, count - half);
+            blocks[b + 1] = upper;
+            blockSizes[b + 1] = count - half;
+            blockSizes[b] = half;
+
+            if (p > half) {
+                b = b + 1;
+                p -= half;
+                block = upper;
+            }
+            count = blockSizes[b];
+        }
+
+        System.arraycopy(block, p, block, p + 1, count - p);
+        block[p] = handle;
+        blockSizes[b] = count + 1;
+        insertBlock = b;
+        insertPos = p;
+    }
+
+    /**
+     * Give the just-inserted handle a label by evenly respacing the smallest
+     * aligned label range around its predecessor's label that is sparse enough.
+     * A range of 2^i labels qualifies when it holds at most (2 / DENSITY_BASE)^i
+     * entries, which bounds the amortized relabeling cost per insertion to
+     * O(log n) (Bender et al., order maintenance by list labeling).
+     */
+    private void relabelAround(long base) {
+        for (int level = 1; level < LABEL_BITS; level++) {
+            long rangeLo = base & -(1L << level);
+            long rangeHi = rangeLo + (1L << level);
+
+            // Count the new handle plus neighbours whose labels fall in the range
+            int first = countBackward(rangeLo);
+            int last = countForward(rangeHi);
+            int count = first + 1 + last;
+            if (count <= Math.pow(2.0 / DENSITY_BASE, level)) {
+                long spacing = (1L << level) / (count + 1);
+                long label = rangeLo;
+                int bi = insertBlock;
+                int pi = insertPos;
+                // Step back to the first entry of the range, then relabel forward
+                for (int k = 0; k < first; k++) {
+                    if (--pi < 0) {
+                        bi--;
+                        pi = blockSizes[bi] - 1;
+                    }
+                }
+                for (int k = 0; k < count; k++) {
+                    label += spacing;
+                    ranks[blocks[bi][pi]] = label;
+                    if (++pi == blockSizes[bi]) {
+                        bi++;
+                        pi = 0;
+                    }
+                }
+                relabelCount++;
+                return;
+            }
+        }
+        relabelAll();
+    }
+
+    /**
+     * Number of entries right before the inserted one whose labels are at least rangeLo.
+     */
+    private int countBackward(long rangeLo) {
+        int n = 0;
+        int bi = insertBlock;
+        int pi = insertPos - 1;
+        while (true) {
+            if (pi < 0) {
+                if (bi == 0) return n;
+                bi--;
+                pi = blockSizes[bi] - 1;
+            }
+            if (ranks[blocks[bi][pi]] < rangeLo) return n;
+            n++;
+            pi--;
+        }
+    }
+
+    /**
+     * Number of entries right after the inserted one whose labels are below rangeHi.
+     */
+    private int countForward(long rangeHi) {
+        int n = 0;
+        int bi = insertBlock;
+        int pi = insertPos + 1;
+        while (true) {
+            if (pi >= blockSizes[bi]) {
+                if (bi == blockCount - 1) return n;
+                bi++;
+                pi = 0;
+            }
+            if (ranks[blocks[bi][pi]] >= rangeHi) return n;
+            n++;
+            pi++;
+        }
+    }
+
+    /**
+     * Respace all labels evenly across the middle half of the label space,
+     * leaving room at both ends for IDs that sort before or after all others.
+     */
+    private void relabelAll() {
+        long spacing = (LABEL_SPACE / 2) / (size + 1L);
+        long label = LABEL_SPACE / 4;
+        for (int b = 0; b < blockCount; b++) {
+            int[] block = blocks[b];
+            for (int i = 0; i < blockSizes[b]; i++) {
+                label += spacing;
+                ranks[block[i]] = label;
+            }
+        }
+        relabelCount++;
+    }
+
+    /**
+     * Write IDs and, for ranked registries, order labels and sorted blocks to a snapshot.
+     * Entities are not written; they are bound again after reading.
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(size);
+        for (int h = 0; h < size; h++) {
+            out.writeString(ids[h]);
+        }
+        if (ranked) {
+            out.writeLongs(ranks, size);
+            out.writeInt(relabelCount);
+            out.writeInt(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                out.writeInt(blockSizes[b]);
+                out.writeInts(blocks[b], blockSizes[b]);
+            }
+        }
+    }
+
+    /**
+     * Replace the contents of an empty registry with a snapshot. Every handle
+     * must then be given its entity with bind().
+     */
+    void readFrom(SnapshotInput in) throws IOException {
+        int count = in.readInt();
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, count - 1)) << 1);
+        ids = new String[capacity];
+        entities = new Object[capacity];
+        for (int h = 0; h < count; h++) {
+            ids[h] = in.readString();
+        }
+        size = count;
+        if (ranked) {
+            ranks = new long[capacity];
+            in.readLongs(ranks, count);
+            relabelCount = in.readInt();
+            blockCount = in.readInt();
+            blocks = new int[Math.max(INITIAL_CAPACITY, blockCount)][];
+            blockSizes = new int[blocks.length];
+            for (int b = 0; b < blockCount; b++) {
+                blockSizes[b] = in.readInt();
+                blocks[b] = new int[BLOCK_CAPACITY];
+                in.readInts(blocks[b], blockSizes[b]);
+            }
+        }
+    }
+
+    /**
+     * Attach the entity for a handle restored from a snapshot.
+     */
+    void bind(int handle, T entity) {
+        entities[handle] = entity;
+    }
+}
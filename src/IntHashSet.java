@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of non-negative ints (entity handles).
+ * Uses a flat int[] table with linear probing, -1 for empty slots and
+ * backward-shift deletion, so membership checks never box or hash strings.
+ */
+public class IntHashSet {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] table;
+    private int mask;
+    private int size;
+
+    // 32 - log2(capacity), so slot() keeps the top log2(capacity) hash bits
+    private int shift;
+
+    /**
+     * Create an empty set.
+     */
+    public IntHashSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * Home slot of a value: the top bits of its Fibonacci hash. The multiply
+     * mixes every input bit into the high bits only, so taking the low bits
+     * would spread keys no better than value & mask.
+     */
+    private int slot(int value) {
+        return (value * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Check if the set contains a value.
+     */
+    public boolean contains(int value) {
+        int i = slot(value);
+        while (table[i] != EMPTY) {
+            if (table[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add a value. Returns false if it was already present.
+     */
+    public boolean add(int value) {
+        int i = slot(value);
+        while (table[i] != EMPTY) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        size++;
+        if (size > table.length * 3 / 4) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Remove a value. Returns false if it was not present.
+     */
+    public boolean remove(int value) {
+        int i = slot(value);
+        while (table[i] != value) {
+            if (table[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Backward-shift deletion keeps every remaining probe chain unbroken
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == EMPTY) {
+                break;
+            }
+            int home = slot(table[j]);
+            boolean homeInRange = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!homeInRange) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Get the number of values in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of slots in the table.
+     */
+    public int capacity() {
+        return table.length;
+    }
+
+    private void rehash() {
+        int[] old = table;
+        allocate(old.length * 2);
+        for (int value : old) {
+            if (value != EMPTY) {
+                place(value);
+            }
+        }
+    }
+
+    /**
+     * Put a value known to be absent into the first free slot of its probe chain.
+     */
+    private void place(int value) {
+        int i = slot(value);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+    }
+
+    /**
+     * Write the table as is (capacity, size, slots) to a snapshot.
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(table.length);
+        out.writeInt(size);
+        out.writeInts(table, table.length);
+    }
+
+    /**
+     * Read a set written by writeTo into a table of the same capacity. Values are
+     * placed again rather than copied in place, so the layout never depends on
+     * the hash the writer used.
+     */
+    static IntHashSet readFrom(SnapshotInput in) throws IOException {
+        IntHashSet set = new IntHashSet();
+        int capacity = in.readInt();
+        int size = in.readInt();
+        int[] slots = new int[capacity];
+        in.readInts(slots, capacity);
+        set.allocate(capacity);
+        for (int value : slots) {
+            if (value != EMPTY) {
+                set.place(value);
+            }
+        }
+        set.size = size;
+        return set;
+    }
+}
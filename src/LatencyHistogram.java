@@ -0,0 +1,99 @@
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ * Values below 128 ns get a bucket each; above that, every power-of-two range
+ * is split into 64 equal buckets, so any recorded value is reported within
+ * 1/64 (about 1.6%) of its true value. Counts live in one preallocated array
+ * and recording is a few shifts and an increment, with no allocation.
+ */
+public class LatencyHistogram {
+    // Sub-buckets per power of two above the linear range
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below this are counted exactly
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    // Largest trackable value (about 18 minutes in ns); larger values are clamped
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+    private long totalCount;
+    private long maxValue;
+
+    /**
+     * Count one value (negative values count as 0).
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public long maxValue() {
+        return maxValue;
+    }
+
+    /**
+     * The value below which the given percentile (0 to 100) of recorded values
+     * fall, reported as the upper end of its bucket (never above the maximum).
+     * Returns 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Add every count of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        // Keep the top SUB_BUCKET_BITS + 1 bits: the mantissa is in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+    }
+
+    /**
+     * Largest value that falls into bucket i.
+     */
+    private static long highestValueAt(int i) {
+        if (i < LINEAR_LIMIT) {
+            return i;
+        }
+        int shift = (i - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long mantissa = (i - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
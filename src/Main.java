@@ -1,4 +1,10 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -10,169 +16,576 @@ import java.util.Locale;
  */
 public class Main {
 
-    private static GigMatchSystem system = new GigMatchSystem();
+    // -Dgigmatch.ranking=buckets selects ScoreBucketIndex instead of MaxHeap per service;
+    // -Dgigmatch.bulkRebuild=true lets large month-end service change batches rebuild heaps
+    private static GigMatchSystem system =
+            new GigMatchSystem("buckets".equals(System.getProperty("gigmatch.ranking")));
+
+    // Size of each memory-mapped window in --input=mmap mode
+    private static final int MAP_WINDOW = 64 << 20;
+
+    // Slots in each of the rings between pipeline stages (--pipeline)
+    private static final int RING_CAPACITY = 4096;
+
+    // Buffered output is written to the file once it reaches this many bytes
+    private static final int OUTPUT_FLUSH_SIZE = 1 << 16;
+
+    // Per-operation latency and error statistics (--latency), null when not collected
+    private static CommandStats stats;
+
+    /**
+     * Receives each non-blank line parsed by an input loop.
+     */
+    interface CommandHandler {
+        void handle(CommandParser parser) throws IOException;
+    }
 
     public static void main(String[] args) {
         Locale.setDefault(Locale.US);
-        if (args.length != 2) {
-            System.err.println("Usage: java Main <input_file> <output_file>");
+
+        // Optional leading flags:
+        // --input=stream (default, byte chunks), --input=mmap (memory-mapped windows),
+        // --input=reader (original BufferedReader line-by-line path) choose how input is read;
+        // --pipeline runs reading/parsing, execution and writing on separate threads;
+        // --journal=<file> replays the journal file to recover state, then journals new changes to it;
+        // --snapshot-in=<file> starts from a saved snapshot (journal replay then skips the records it holds),
+        // --snapshot-out=<file> saves a snapshot after the input has been processed and rotates the journal;
+        // --latency=<file> records per-operation latencies and errors and writes them to the file at exit,
+        // --latency-interval=<seconds> also rewrites that file periodically while commands run
+        String inputMode = "stream";
+        boolean pipeline = false;
+        String journalFile = null;
+        String snapshotIn = null;
+        String snapshotOut = null;
+        String latencyFile = null;
+        long latencyInterval = 0;
+        int argIndex = 0;
+        boolean validFlags = true;
+        while (argIndex < args.length && args[argIndex].startsWith("--")) {
+            String flag = args[argIndex++];
+            if (flag.startsWith("--input=")) {
+                inputMode = flag.substring("--input=".length());
+                validFlags &= inputMode.equals("stream") || inputMode.equals("mmap")
+                        || inputMode.equals("reader");
+            } else if (flag.equals("--pipeline")) {
+                pipeline = true;
+            } else if (flag.startsWith("--journal=")) {
+                journalFile = flag.substring("--journal=".length());
+            } else if (flag.startsWith("--snapshot-in=")) {
+                snapshotIn = flag.substring("--snapshot-in=".length());
+            } else if (flag.startsWith("--snapshot-out=")) {
+                snapshotOut = flag.substring("--snapshot-out=".length());
+            } else if (flag.startsWith("--latency=")) {
+                latencyFile = flag.substring("--latency=".length());
+            } else if (flag.startsWith("--latency-interval=")) {
+                try {
+                    latencyInterval = Long.parseLong(flag.substring("--latency-interval=".length()));
+                } catch (NumberFormatException e) {
+                    latencyInterval = 0;
+                }
+                validFlags &= latencyInterval > 0;
+            } else {
+                validFlags = false;
+            }
+        }
+        validFlags &= latencyInterval == 0 || latencyFile != null;
+        if (args.length - argIndex != 2 || !validFlags) {
+            System.err.println("Usage: java Main [--input=stream|mmap|reader] [--pipeline] " +
+                    "[--journal=<file>] [--snapshot-in=<file>] [--snapshot-out=<file>] " +
+                    "[--latency=<file> [--latency-interval=<seconds>]] <input_file> <output_file>");
             System.exit(1);
         }
 
-        String inputFile = args[0];
-        String outputFile = args[1];
+        String inputFile = args[argIndex];
+        String outputFile = args[argIndex + 1];
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
+        try {
+            if (snapshotIn != null) {
+                system = GigMatchSystem.readSnapshot(Paths.get(snapshotIn));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading snapshot: " + e.getMessage());
+            System.exit(1);
+        }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) {
-                    continue;
-                }
+        try (CommandJournal journal = openJournal(journalFile);
+             OutputStream output = new FileOutputStream(outputFile)) {
 
-                processCommand(line, writer);
+            system.setBulkRebuild(Boolean.getBoolean("gigmatch.bulkRebuild"));
+            if (latencyFile != null) {
+                stats = new CommandStats(Paths.get(latencyFile), latencyInterval);
             }
 
-        } catch (IOException e) {
+            if (pipeline) {
+                runPipeline(inputMode, inputFile, journal, output);
+            } else {
+                // Responses accumulate in one sink that is flushed to the file in large writes
+                Command command = new Command();
+                OutputSink sink = new OutputSink(OUTPUT_FLUSH_SIZE + 1024);
+                readInput(inputMode, inputFile, parser -> {
+                    command.decode(parser);
+                    execute(command, sink);
+                    if (sink.length() >= OUTPUT_FLUSH_SIZE) {
+                        writeCommitted(sink, journal, output);
+                    }
+                });
+                writeCommitted(sink, journal, output);
+            }
+
+            if (stats != null) {
+                stats.report();
+            }
+
+            if (snapshotOut != null) {
+                system.writeSnapshot(Paths.get(snapshotOut));
+                // The snapshot holds every journaled change, so the journal can start over
+                if (journal != null) {
+                    journal.rotate();
+                }
+            }
+
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("Error reading/writing files: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private static void processCommand(String command, BufferedWriter writer)
+    /**
+     * Write the sink's responses to the output and reset it. Responses reach the
+     * file only after the changes behind them are journaled, so the journal is
+     * committed first.
+     */
+    private static void writeCommitted(OutputSink sink, CommandJournal journal, OutputStream output)
             throws IOException {
+        if (journal != null) {
+            journal.commit();
+        }
+        sink.writeTo(output);
+        sink.reset();
+    }
+
+    /**
+     * Open the journal file, if any, and recover the system state it records
+     * before new changes are appended. -Dgigmatch.journal.fsync=false skips fsync.
+     */
+    private static CommandJournal openJournal(String journalFile) throws IOException {
+        if (journalFile == null) {
+            return null;
+        }
+        boolean fsync = !"false".equals(System.getProperty("gigmatch.journal.fsync"));
+        CommandJournal journal = CommandJournal.open(Paths.get(journalFile), fsync);
+        long recovered;
+        try {
+            recovered = journal.replay(system, system.getSnapshotJournalGeneration(),
+                    system.getSnapshotJournalPosition());
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        if (recovered > 0) {
+            System.err.println("Recovered " + recovered + " records from journal " + journalFile);
+        }
+        system.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Feed every line of the input file to the handler using the chosen input mode.
+     */
+    private static void readInput(String inputMode, String inputFile, CommandHandler handler)
+            throws IOException {
+        switch (inputMode) {
+            case "mmap":
+                processMapped(inputFile, handler);
+                break;
+            case "reader":
+                processReader(inputFile, handler);
+                break;
+            default:
+                try (InputStream in = new FileInputStream(inputFile)) {
+                    processStream(in, handler);
+                }
+        }
+    }
+
+    /**
+     * Three-stage pipeline: a reader thread parses lines into Command slots, an
+     * engine thread executes them against the system, and the calling thread
+     * writes the results. Stages are connected by bounded SpscRings, which keep
+     * commands and results in input order, so the output is the same as the
+     * single-threaded path. The writer commits the journal before each flush,
+     * as the single-threaded path does.
+     */
+    private static void runPipeline(String inputMode, String inputFile, CommandJournal journal,
+                                    OutputStream output)
+            throws IOException {
+        SpscRing<Command> commands = new SpscRing<>(RING_CAPACITY, Command::new);
+        SpscRing<OutputSink> results = new SpscRing<>(RING_CAPACITY, OutputSink::new);
+        IOException[] readFailure = new IOException[1];
+        RuntimeException[] engineFailure = new RuntimeException[1];
 
-        String[] parts = command.split("\\s+");
-        String operation = parts[0];
+        Thread reader = new Thread(() -> {
+            try {
+                readInput(inputMode, inputFile, parser -> {
+                    commands.claim().decode(parser);
+                    commands.publish();
+                });
+            } catch (IOException e) {
+                readFailure[0] = e;
+            } finally {
+                commands.close();
+            }
+        }, "gigmatch-reader");
+
+        Thread engine = new Thread(() -> {
+            try {
+                Command command;
+                while ((command = commands.take()) != null) {
+                    OutputSink result = results.claim();
+                    result.reset();
+                    execute(command, result);
+                    commands.release();
+                    results.publish();
+                }
+            } catch (RuntimeException e) {
+                engineFailure[0] = e;
+                // Keep draining so the reader thread is never left waiting for space
+                while (commands.take() != null) {
+                    commands.release();
+                }
+            } finally {
+                results.close();
+            }
+        }, "gigmatch-engine");
+
+        reader.start();
+        engine.start();
+
+        OutputSink chunk = new OutputSink(OUTPUT_FLUSH_SIZE + 1024);
+        OutputSink result;
+        while ((result = results.take()) != null) {
+            chunk.append(result);
+            results.release();
+            if (chunk.length() >= OUTPUT_FLUSH_SIZE) {
+                writeCommitted(chunk, journal, output);
+            }
+        }
+        writeCommitted(chunk, journal, output);
 
         try {
-            String result = "";
+            reader.join();
+            engine.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for pipeline threads");
+        }
+        if (readFailure[0] != null) {
+            throw readFailure[0];
+        }
+        if (engineFailure[0] != null) {
+            throw engineFailure[0];
+        }
+    }
+
+    /**
+     * Original input path: decodes the file with BufferedReader and parses each line as a String.
+     */
+    private static void processReader(String inputFile, CommandHandler handler) throws IOException {
+        CommandParser parser = new CommandParser();
+        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parser.parse(line)) {
+                    handler.handle(parser);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads raw bytes in large chunks and hands every line to the byte-level parser.
+     */
+    private static void processStream(InputStream in, CommandHandler handler) throws IOException {
+        CommandParser parser = new CommandParser();
+        byte[] bytes = new byte[1 << 16];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int length = 0;
+        boolean skipLineFeed = false;
+
+        while (true) {
+            int read = in.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+
+            int lineStart = processLines(parser, buffer, length, skipLineFeed, handler);
+            skipLineFeed = endsWithCarriageReturn(buffer, lineStart, length, skipLineFeed);
+
+            // Keep the unfinished line, growing the buffer if it fills it entirely
+            length -= lineStart;
+            System.arraycopy(bytes, lineStart, bytes, 0, length);
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+        }
+
+        if (length > 0 && parser.parse(buffer, 0, length)) {
+            handler.handle(parser);
+        }
+    }
+
+    /**
+     * Memory-maps the input in MAP_WINDOW windows and parses lines straight from
+     * the mapped buffer. A line cut off at the end of a window is re-read from
+     * the start of the next window; the window doubles if a single line exceeds it.
+     */
+    private static void processMapped(String inputFile, CommandHandler handler) throws IOException {
+        CommandParser parser = new CommandParser();
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            int window = MAP_WINDOW;
+            boolean skipLineFeed = false;
+
+            while (position < fileSize) {
+                int length = (int) Math.min(window, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int lineStart = processLines(parser, buffer, length, skipLineFeed, handler);
+
+                if (position + length == fileSize) {
+                    if (lineStart < length && parser.parse(buffer, lineStart, length)) {
+                        handler.handle(parser);
+                    }
+                    break;
+                }
+                if (lineStart == 0) {
+                    window = (int) Math.min(Integer.MAX_VALUE - 8, window * 2L);
+                    continue;
+                }
+                skipLineFeed = endsWithCarriageReturn(buffer, lineStart, length, skipLineFeed);
+                position += lineStart;
+            }
+        }
+    }
+
+    /**
+     * Runs every complete line in [0, length) of the buffer and returns the start
+     * of the trailing unfinished line. Lines end at \n, \r or \r\n, as with
+     * BufferedReader.readLine(); skipLineFeed says the previous chunk ended in \r.
+     */
+    private static int processLines(CommandParser parser, ByteBuffer buffer, int length,
+                                    boolean skipLineFeed, CommandHandler handler) throws IOException {
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(i);
+            if (b != '\n' && b != '\r') {
+                skipLineFeed = false;
+                continue;
+            }
+            if (b == '\n' && skipLineFeed) {
+                // Second half of a \r\n pair
+                skipLineFeed = false;
+                lineStart = i + 1;
+                continue;
+            }
+            if (parser.parse(buffer, lineStart, i)) {
+                handler.handle(parser);
+            }
+            skipLineFeed = b == '\r';
+            lineStart = i + 1;
+        }
+        return lineStart;
+    }
+
+    /**
+     * Whether the bytes consumed before lineStart ended with a \r whose \n may follow.
+     */
+    private static boolean endsWithCarriageReturn(ByteBuffer buffer, int lineStart, int length,
+                                                  boolean skipLineFeed) {
+        if (lineStart > 0) {
+            return buffer.get(lineStart - 1) == '\r';
+        }
+        return length == 0 && skipLineFeed;
+    }
+
+    /**
+     * Run a decoded command against the system and append its output line to the
+     * sink (an error message if the command was malformed or failed), timing it
+     * when latency statistics are collected.
+     */
+    private static void execute(Command command, OutputSink out) {
+        if (stats == null) {
+            dispatch(command, out);
+            return;
+        }
+        int mark = out.length();
+        long start = System.nanoTime();
+        dispatch(command, out);
+        stats.record(command.opcode, start, System.nanoTime(), out, mark);
+    }
 
-            switch (operation) {
-                case "register_customer":
+    private static void dispatch(Command command, OutputSink out) {
+        int mark = out.length();
+        if (command.malformed) {
+            appendError(command, out);
+            return;
+        }
+        int[] ints = command.ints;
+
+        try {
+            switch (command.opcode) {
+                case CommandParser.OP_REGISTER_CUSTOMER:
                     // Creates a new customer account with the given ID
-                    result = system.registerCustomer(parts[1]);
+                    system.registerCustomer(command.id1, out);
                     break;
 
-                case "register_freelancer":
+                case CommandParser.OP_REGISTER_FREELANCER:
                     // Registers a new freelancer with their service offering, base price,
                     // and initial skill profile (T, C, R, E, A values)
-                    result = system.registerFreelancer(
-                            parts[1], // freelancerID
-                            parts[2], // service type (e.g., paint, web_dev)
-                            Integer.parseInt(parts[3]), // base price for the service
-                            Integer.parseInt(parts[4]), // T - Technical Proficiency
-                            Integer.parseInt(parts[5]), // C - Communication
-                            Integer.parseInt(parts[6]), // R - Creativity
-                            Integer.parseInt(parts[7]), // E - Efficiency
-                            Integer.parseInt(parts[8])  // A - Attention to Detail
+                    system.registerFreelancer(
+                            command.id1, // freelancerID
+                            command.id2, // service type (e.g., paint, web_dev)
+                            ints[0], // base price for the service
+                            ints[1], // T - Technical Proficiency
+                            ints[2], // C - Communication
+                            ints[3], // R - Creativity
+                            ints[4], // E - Efficiency
+                            ints[5], // A - Attention to Detail
+                            out
                     );
                     break;
 
-                case "request_job":
+                case CommandParser.OP_REGISTER_FREELANCERS:
+                    // Registers a batch of freelancers, one row of register_freelancer
+                    // arguments each, printing one line per row
+                    system.registerFreelancers(command.rowIds, command.rowServices, command.rowInts,
+                            command.rows, out);
+                    break;
+
+                case CommandParser.OP_REQUEST_JOB:
                     // Finds and ranks available freelancers for a specific service,
                     // displays top K candidates, and auto-employs the best match
-                    result = system.requestJob(
-                            parts[1], // customerID
-                            parts[2], // service type requested
-                            Integer.parseInt(parts[3]) // topK - number of candidates to display
+                    system.requestJob(
+                            command.id1, // customerID
+                            command.id2, // service type requested
+                            ints[0], // topK - number of candidates to display
+                            out
                     );
                     break;
 
-                case "employ_freelancer":
+                case CommandParser.OP_EMPLOY_FREELANCER:
                     // Manually employs a specific freelancer for a customer
                     // (used in Type 1 test cases only)
-                    result = system.employ(parts[1], parts[2]);
+                    system.employ(command.id1, command.id2, out);
                     break;
 
-                case "complete_and_rate":
+                case CommandParser.OP_COMPLETE_AND_RATE:
                     // Marks a job as completed, updates freelancer's rating average,
                     // applies skill gains if rating >= 4, and makes freelancer available again
-                    result = system.completeAndRate(
-                            parts[1], // freelancerID
-                            Integer.parseInt(parts[2]) // rating (0-5)
+                    system.completeAndRate(
+                            command.id1, // freelancerID
+                            ints[0], // rating (0-5)
+                            out
                     );
                     break;
 
-                case "cancel_by_freelancer":
+                case CommandParser.OP_CANCEL_BY_FREELANCER:
                     // Handles freelancer-initiated cancellation: applies 0-star rating,
                     // degrades all skills by 3, and checks for platform blacklist (5+ cancels/month)
-                    result = system.cancelByFreelancer(parts[1]);
+                    system.cancelByFreelancer(command.id1, out);
                     break;
 
-                case "cancel_by_customer":
+                case CommandParser.OP_CANCEL_BY_CUSTOMER:
                     // Handles customer-initiated cancellation: frees up the freelancer
                     // and deducts loyalty points from the customer ($250 penalty)
-                    result = system.cancelByCustomer(parts[1], parts[2]);
+                    system.cancelByCustomer(command.id1, command.id2, out);
                     break;
 
-                case "blacklist":
+                case CommandParser.OP_BLACKLIST:
                     // Adds a freelancer to a customer's personal blacklist,
                     // preventing them from appearing in future job requests
-                    result = system.blacklist(parts[1], parts[2]);
+                    system.blacklist(command.id1, command.id2, out);
                     break;
 
-                case "unblacklist":
+                case CommandParser.OP_UNBLACKLIST:
                     // Removes a freelancer from a customer's personal blacklist,
                     // allowing them to be matched again in future requests
-                    result = system.unblacklist(parts[1], parts[2]);
+                    system.unblacklist(command.id1, command.id2, out);
                     break;
 
-                case "change_service":
+                case CommandParser.OP_CHANGE_SERVICE:
                     // Queues a service type change for a freelancer to be applied
                     // at the next month simulation (updates service and price)
-                    result = system.changeService(
-                            parts[1], // freelancerID
-                            parts[2], // new service type
-                            Integer.parseInt(parts[3]) // new price
+                    system.changeService(
+                            command.id1, // freelancerID
+                            command.id2, // new service type
+                            ints[0], // new price
+                            out
                     );
                     break;
 
-                case "simulate_month":
+                case CommandParser.OP_SIMULATE_MONTH:
                     // Advances the system by one month: applies queued service changes,
                     // updates burnout status, recalculates loyalty tiers
-                    result = system.simulateMonth();
+                    system.simulateMonth(out);
                     break;
 
-                case "query_freelancer":
+                case CommandParser.OP_QUERY_FREELANCER:
                     // Retrieves and displays detailed information about a freelancer:
                     // service, price, rating, job counts, skills, availability, burnout status
-                    result = system.queryFreelancer(parts[1]);
+                    system.queryFreelancer(command.id1, out);
                     break;
 
-                case "query_customer":
+                case CommandParser.OP_QUERY_CUSTOMER:
                     // Retrieves and displays customer information:
                     // total spending, loyalty tier, blacklist count, employment count
-                    result = system.queryCustomer(parts[1]);
+                    system.queryCustomer(command.id1, out);
                     break;
 
-                case "update_skill":
+                case CommandParser.OP_UPDATE_SKILL:
                     // Manually updates a freelancer's skill profile with new values
                     // (used in Type 3 test cases only)
-                    result = system.updateSkill(
-                            parts[1], // freelancerID
-                            Integer.parseInt(parts[2]), // T - Technical Proficiency
-                            Integer.parseInt(parts[3]), // C - Communication
-                            Integer.parseInt(parts[4]), // R - Creativity
-                            Integer.parseInt(parts[5]), // E - Efficiency
-                            Integer.parseInt(parts[6])  // A - Attention to Detail
+                    system.updateSkill(
+                            command.id1, // freelancerID
+                            ints[0], // T - Technical Proficiency
+                            ints[1], // C - Communication
+                            ints[2], // R - Creativity
+                            ints[3], // E - Efficiency
+                            ints[4], // A - Attention to Detail
+                            out
                     );
                     break;
 
+                case CommandParser.OP_STATS:
+                    // Reports the structure of the hash maps and service rankings:
+                    // load, chain and probe lengths, bucket occupancy, heap depth and sift distance
+                    system.stats(out);
+                    break;
+
                 default:
-                    result = "Unknown command: " + operation;
+                    out.append("Unknown command: ").append(command.id1);
             }
 
-            if (result != null && !result.isEmpty()) {
-                writer.write(result);
-                writer.newLine();
+            if (out.length() > mark) {
+                out.newLine();
             }
 
+        } catch (UncheckedIOException e) {
+            // The journal could not be written: stop rather than diverge from it
+            throw e;
         } catch (Exception e) {
-            writer.write("Error processing command: " + command);
-            writer.newLine();
+            // Discard any partial response
+            out.setLength(mark);
+            appendError(command, out);
         }
     }
-}
\ No newline at end of file
+
+    private static void appendError(Command command, OutputSink out) {
+        out.append("Error processing command: ");
+        command.appendLine(out);
+        out.newLine();
+    }
+}
@@ -1,16 +1,43 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * Max heap for organizing freelancers by composite score for their service.
  * Maintains heap property where parent has higher or equal composite score than children.
  */
-public class MaxHeap {
+public class MaxHeap implements ServiceRanking {
     private ArrayList<Freelancer> heap;
     private int[] serviceProfile;
 
-    public MaxHeap(int[] serviceProfile) {
+    // Registry providing precomputed lexicographic ranks for ID tie-breaks
+    private IdRegistry<Freelancer> freelancerIds;
+
+    // Set between beginBulk and endBulk: removals leave null holes, insertions append unsorted
+    private boolean bulk;
+    private int holes;
+
+    // Reusable auxiliary heap for top-k queries: heap indices and the order they were pushed
+    private int[] frontierIdx;
+    private int[] frontierOrder;
+    private int frontierSize;
+    private int frontierSeq;
+
+    // Counters of the last top-k query
+    private int lastScanned;
+    private int lastBlacklistRejected;
+
+    // Repositionings (one per insert, remove or update) and the levels they moved entries in total
+    private long sifts;
+    private long siftLevels;
+
+    public MaxHeap(int[] serviceProfile, IdRegistry<Freelancer> freelancerIds) {
         this.heap = new ArrayList<>();
         this.serviceProfile = serviceProfile;
+        this.freelancerIds = freelancerIds;
+        this.frontierIdx = new int[16];
+        this.frontierOrder = new int[16];
     }
 
     /**
@@ -21,7 +48,10 @@ public class MaxHeap {
         freelancer.lastCompositeScore = calculateCompositeScore(freelancer);
         heap.add(freelancer);
         freelancer.heapIndex = heap.size() - 1;
-        heapifyUp(heap.size() - 1);
+        if (!bulk) {
+            sifts++;
+            heapifyUp(heap.size() - 1);
+        }
     }
 
     /**
@@ -31,12 +61,20 @@ public class MaxHeap {
         int index = freelancer.heapIndex;
         if (index < 0 || index >= heap.size()) return;
 
+        if (bulk) {
+            heap.set(index, null);
+            freelancer.heapIndex = -1;
+            holes++;
+            return;
+        }
+
         int lastIndex = heap.size() - 1;
         swap(index, lastIndex);
         heap.remove(lastIndex);
         freelancer.heapIndex = -1;
 
         if (index < heap.size()) {
+            sifts++;
             heapifyDown(index);
             heapifyUp(index);
         }
@@ -46,43 +84,150 @@ public class MaxHeap {
         return heap;
     }
 
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Number of levels of the heap tree.
+     */
+    public int depth() {
+        return 32 - Integer.numberOfLeadingZeros(heap.size());
+    }
+
+    /**
+     * Number of insertions, removals and updates that restored heap order.
+     */
+    public long siftCount() {
+        return sifts;
+    }
+
+    /**
+     * Mean number of levels an insertion, removal or update moved an entry.
+     */
+    public double averageSiftDistance() {
+        return sifts == 0 ? 0 : (double) siftLevels / sifts;
+    }
+
+    public void appendStats(OutputSink out) {
+        out.append("heap size ").append(heap.size()).append(", depth ").append(depth())
+                .append(", sifts ").append(Long.toString(sifts))
+                .append(", mean sift distance ")
+                .append(String.format(Locale.US, "%.2f", averageSiftDistance()));
+    }
+
     /**
      * Returns top eligible freelancers in sorted order (highest composite score first).
+     * Walks the heap best-first with an auxiliary heap of frontier indices, so the
+     * cost is O(m log m) for the m nodes visited instead of a linear scan per pick.
      */
     public ArrayList<Freelancer> getTopEligibleFreelancers(int needed, Customer customer) {
         ArrayList<Freelancer> result = new ArrayList<>();
 
-        // Custom priority queue implementation using ArrayList
-        ArrayList<Integer> pq = new ArrayList<>();
-
-        if (!heap.isEmpty()) pq.add(0);
+        frontierSize = 0;
+        frontierSeq = 0;
+        if (!heap.isEmpty()) frontierPush(0);
 
-        while (!pq.isEmpty() && result.size() < needed) {
-            // Find and remove max element from pq
-            int maxIdx = 0;
-            for (int i = 1; i < pq.size(); i++) {
-                if (compare(heap.get(pq.get(i)), heap.get(pq.get(maxIdx))) > 0) {
-                    maxIdx = i;
-                }
-            }
-            int idx = pq.remove(maxIdx);
+        int scanned = 0;
+        int rejected = 0;
+        while (frontierSize > 0 && result.size() < needed) {
+            int idx = frontierPop();
 
             Freelancer f = heap.get(idx);
+            scanned++;
 
-            if (f.available && !f.platformBlacklisted && !customer.isBlacklisted(f.id)) {
-                result.add(f);
+            if (f.isAvailable() && !f.isPlatformBlacklisted()) {
+                if (customer.isBlacklisted(f.handle)) {
+                    rejected++;
+                } else {
+                    result.add(f);
+                }
             }
 
             int left = 2 * idx + 1;
             int right = 2 * idx + 2;
 
-            if (left < heap.size()) pq.add(left);
-            if (right < heap.size()) pq.add(right);
+            if (left < heap.size()) frontierPush(left);
+            if (right < heap.size()) frontierPush(right);
         }
 
+        lastScanned = scanned;
+        lastBlacklistRejected = rejected;
         return result;
     }
 
+    public int lastScanned() {
+        return lastScanned;
+    }
+
+    public int lastBlacklistRejected() {
+        return lastBlacklistRejected;
+    }
+
+    /**
+     * Adds a heap index to the frontier, growing the reusable arrays if needed.
+     */
+    private void frontierPush(int heapIdx) {
+        if (frontierSize == frontierIdx.length) {
+            frontierIdx = Arrays.copyOf(frontierIdx, frontierSize * 2);
+            frontierOrder = Arrays.copyOf(frontierOrder, frontierSize * 2);
+        }
+        int i = frontierSize++;
+        frontierIdx[i] = heapIdx;
+        frontierOrder[i] = frontierSeq++;
+
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (frontierCompare(i, parent) <= 0) break;
+            frontierSwap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Removes and returns the best heap index in the frontier.
+     */
+    private int frontierPop() {
+        int top = frontierIdx[0];
+        frontierSize--;
+        frontierIdx[0] = frontierIdx[frontierSize];
+        frontierOrder[0] = frontierOrder[frontierSize];
+
+        // Sift down
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = 2 * i + 2;
+            if (left < frontierSize && frontierCompare(left, largest) > 0) largest = left;
+            if (right < frontierSize && frontierCompare(right, largest) > 0) largest = right;
+            if (largest == i) break;
+            frontierSwap(i, largest);
+            i = largest;
+        }
+        return top;
+    }
+
+    /**
+     * Orders frontier entries by their freelancers, then by push order (earlier first),
+     * which matters only when the same freelancer is in the heap twice.
+     */
+    private int frontierCompare(int a, int b) {
+        int c = compare(heap.get(frontierIdx[a]), heap.get(frontierIdx[b]));
+        if (c != 0) return c;
+        return frontierOrder[b] - frontierOrder[a];
+    }
+
+    private void frontierSwap(int a, int b) {
+        int tmpIdx = frontierIdx[a];
+        frontierIdx[a] = frontierIdx[b];
+        frontierIdx[b] = tmpIdx;
+        int tmpOrder = frontierOrder[a];
+        frontierOrder[a] = frontierOrder[b];
+        frontierOrder[b] = tmpOrder;
+    }
+
     /**
      * Updates a freelancer's position in the heap after skill changes.
      */
@@ -93,10 +238,105 @@ public class MaxHeap {
         // Recalculate composite score
         freelancer.lastCompositeScore = calculateCompositeScore(freelancer);
 
+        sifts++;
         heapifyDown(index);
         heapifyUp(index);
     }
 
+    /**
+     * A single change sifts over about log n levels, mostly near the cached top of
+     * the heap, while a rebuild visits every entry at a cache miss each. With n the
+     * size plus the changes, HeapRebuildBenchmark puts the break-even point for a
+     * bare heap at changes * log n of 4.5 to 5.1 times n (10k to 1M entries).
+     * Within a month (ServiceChangeBenchmark, 100k-entry rankings) rebuilding still
+     * loses 8% at 5.1n, breaks even at 6n and wins 17% at 6.75n, so a rebuild is
+     * chosen above 6n.
+     */
+    public boolean prefersRebuild(int changes) {
+        int n = heap.size() + changes;
+        int log = 32 - Integer.numberOfLeadingZeros(n);
+        return (long) changes * log > 6L * n;
+    }
+
+    public void beginBulk() {
+        bulk = true;
+        holes = 0;
+    }
+
+    /**
+     * Closes the holes left by removals and re-heapifies bottom-up (Floyd), O(n).
+     * The sift runs over packed copies of the sort keys, since following every
+     * entry to its freelancer would miss the cache on each comparison.
+     */
+    public void endBulk() {
+        GigMatchEvents.HeapRebuild event = new GigMatchEvents.HeapRebuild();
+        event.begin();
+        int compacted = holes;
+        bulk = false;
+        int n = heap.size() - holes;
+        holes = 0;
+        Freelancer[] items = new Freelancer[n];
+        int[] scores = new int[n];
+        long[] ranks = new long[n];
+        int kept = 0;
+        for (int i = 0; i < heap.size(); i++) {
+            Freelancer f = heap.get(i);
+            if (f != null) {
+                items[kept] = f;
+                scores[kept] = f.lastCompositeScore;
+                ranks[kept] = freelancerIds.rankOf(f.handle);
+                kept++;
+            }
+        }
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(items, scores, ranks, n, i);
+        }
+        heap.clear();
+        for (int i = 0; i < n; i++) {
+            heap.add(items[i]);
+            items[i].heapIndex = i;
+        }
+        if (event.shouldCommit()) {
+            event.size = n;
+            event.holes = compacted;
+            event.commit();
+        }
+    }
+
+    /**
+     * heapifyDown over the packed keys of endBulk: higher score first, then smaller ID rank.
+     */
+    private static void siftDown(Freelancer[] items, int[] scores, long[] ranks, int n, int index) {
+        Freelancer item = items[index];
+        int score = scores[index];
+        long rank = ranks[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= n) break;
+            int right = child + 1;
+            if (right < n && (scores[right] > scores[child]
+                    || (scores[right] == scores[child] && ranks[right] < ranks[child]))) {
+                child = right;
+            }
+            if (scores[child] < score || (scores[child] == score && ranks[child] > rank)) break;
+            items[index] = items[child];
+            scores[index] = scores[child];
+            ranks[index] = ranks[child];
+            index = child;
+        }
+        items[index] = item;
+        scores[index] = score;
+        ranks[index] = rank;
+    }
+
+    public boolean isSelfContained(String service) {
+        for (int i = 0; i < heap.size(); i++) {
+            Freelancer f = heap.get(i);
+            if (f.heapIndex != i || !f.service.equals(service)) return false;
+        }
+        return true;
+    }
+
     /**
      * Restores heap property by moving element up.
      */
@@ -105,6 +345,7 @@ public class MaxHeap {
             int parent = (index - 1) / 2;
             if (compare(heap.get(index), heap.get(parent)) > 0) {
                 swap(index, parent);
+                siftLevels++;
                 index = parent;
             } else {
                 break;
@@ -131,6 +372,7 @@ public class MaxHeap {
 
             if (largest != index) {
                 swap(index, largest);
+                siftLevels++;
                 index = largest;
             } else {
                 break;
@@ -141,14 +383,15 @@ public class MaxHeap {
     /**
      * Compares two freelancers based on composite score.
      * Returns positive if f1 > f2, negative if f1 < f2, zero if equal.
-     * Tie-breaker: lexicographically smaller ID wins (higher priority).
+     * Tie-breaker: lexicographically smaller ID wins (higher priority), using the
+     * registry's precomputed ranks instead of comparing ID strings.
      */
     private int compare(Freelancer f1, Freelancer f2) {
         if (f1.lastCompositeScore != f2.lastCompositeScore) {
             return f1.lastCompositeScore - f2.lastCompositeScore;
         }
         // Lexicographically smaller ID should have higher priority in max heap
-        return f2.id.compareTo(f1.id);
+        return freelancerIds.compare(f2.handle, f1.handle);
     }
 
     /**
@@ -166,22 +409,35 @@ public class MaxHeap {
      * Calculates composite score for a freelancer based on this heap's service profile.
      */
     private int calculateCompositeScore(Freelancer f) {
-        double skillScore = calculateSkillScore(f);
-        double ratingScore = f.getAverageRating() / 5.0;
-        double reliabilityScore = calculateReliabilityScore(f);
-        double burnoutPenalty = f.burnout ? 0.45 : 0.0;
+        return calculateCompositeScore(f, serviceProfile);
+    }
+
+    /**
+     * Calculates composite score for a freelancer against a service profile.
+     * Always lies in [-4500, 10000]: the three weighted terms are each in [0, 1]
+     * and burnout subtracts 0.45.
+     */
+    static int calculateCompositeScore(Freelancer f, int[] serviceProfile) {
+        FreelancerStore store = f.store;
+        int row = f.row;
+
+        double skillScore = calculateSkillScore(store, row, serviceProfile);
+        double ratingScore = store.ratings[row] / 5.0;
+        double reliabilityScore = calculateReliabilityScore(store, row);
+        double burnoutPenalty = store.hasFlag(row, FreelancerStore.BURNOUT) ? 0.45 : 0.0;
 
         double composite = 10000 * (0.55 * skillScore + 0.25 * ratingScore +
                 0.20 * reliabilityScore - burnoutPenalty);
         return (int) Math.floor(composite);
     }
 
-    private double calculateSkillScore(Freelancer f) {
-        int dotProduct = f.skills[0] * serviceProfile[0] +
-                f.skills[1] * serviceProfile[1] +
-                f.skills[2] * serviceProfile[2] +
-                f.skills[3] * serviceProfile[3] +
-                f.skills[4] * serviceProfile[4];
+    private static double calculateSkillScore(FreelancerStore store, int row, int[] serviceProfile) {
+        int[][] skills = store.skills;
+        int dotProduct = skills[0][row] * serviceProfile[0] +
+                skills[1][row] * serviceProfile[1] +
+                skills[2][row] * serviceProfile[2] +
+                skills[3][row] * serviceProfile[3] +
+                skills[4][row] * serviceProfile[4];
 
         int sumService = serviceProfile[0] + serviceProfile[1] +
                 serviceProfile[2] + serviceProfile[3] + serviceProfile[4];
@@ -189,9 +445,34 @@ public class MaxHeap {
         return (double) dotProduct / (100.0 * sumService);
     }
 
-    private double calculateReliabilityScore(Freelancer f) {
-        int total = f.completedJobs + f.cancelledJobs;
+    private static double calculateReliabilityScore(FreelancerStore store, int row) {
+        int completed = store.completedJobs[row];
+        int cancelled = store.cancelledJobs[row];
+        int total = completed + cancelled;
         if (total == 0) return 1.0;
-        return 1.0 - ((double) f.cancelledJobs / total);
+        return 1.0 - ((double) cancelled / total);
+    }
+
+    /**
+     * Writes the heap array as freelancer handles, in heap order.
+     */
+    public void writeTo(SnapshotOutput out) throws IOException {
+        int n = heap.size();
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(heap.get(i).handle);
+        }
+    }
+
+    /**
+     * Restores the heap array exactly as written, so no re-heapify is needed.
+     */
+    public void readFrom(SnapshotInput in, IdRegistry<Freelancer> freelancerIds) throws IOException {
+        int n = in.readInt();
+        heap.clear();
+        heap.ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            heap.add(freelancerIds.get(in.readInt()));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,657 @@
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Open-addressing hash map with the same API as CustomHashMap.
+ * Keys, values and cached hash codes live in parallel flat arrays and
+ * collisions are resolved with linear probing, so a lookup touches a few
+ * adjacent slots instead of chasing bucket lists.
+ *
+ * Entries are kept ordered by home slot (Robin Hood style: a new key is placed
+ * after every entry whose home is not later than its own and the rest of the run
+ * shifts right). Home slots use the same Math.abs(hashCode) % capacity as
+ * CustomHashMap and the table doubles at the same load factor, so iteration
+ * visits entries in exactly the order CustomHashMap would. simulateMonth output
+ * depends on that order, which is why the hashing is not changed here.
+ *
+ * In incremental mode a resize only allocates the doubled table; the entries of
+ * the old table are then migrated a few home slots at a time on each put and
+ * remove, with lookups consulting both tables until the migration finishes.
+ */
+public class OpenHashMap<K, V> {
+    // Slot arrays: keys[i] == null marks an empty slot
+    private Object[] keys;
+    private Object[] vals;
+
+    // Cached hash code of the key stored in each slot
+    private int[] hashes;
+
+    // Capacity - 1, capacity is always a power of two
+    private int mask;
+
+    // Table being drained into the current one during an incremental resize (null otherwise)
+    private Object[] oldKeys;
+    private Object[] oldVals;
+    private int[] oldHashes;
+    private int oldMask;
+
+    // Next home slot of the old table to migrate; homes below it are already moved
+    private int migrateCursor;
+
+    // Number of key-value pairs currently stored (both tables)
+    private int size;
+
+    // Size above which the table is doubled (capacity * 0.75)
+    private int threshold;
+
+    // Number of times the table was grown
+    private int resizes;
+
+    // Whether resizes are spread over later operations instead of done at once
+    private final boolean incremental;
+
+    // Reusable cursor handed out by cursor(), created on first use
+    private Cursor cursor;
+
+    // Starting capacity for the hash table
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Old home slots migrated per put/remove while a resize is in progress.
+    // At 8 the old table is drained after capacity/8 puts, long before either table can fill.
+    private static final int MIGRATE_STEP = 8;
+
+    /**
+     * Create a new empty hash map with initial capacity.
+     */
+    public OpenHashMap() {
+        this(false);
+    }
+
+    /**
+     * Create a new empty hash map, optionally spreading each resize over
+     * the following operations instead of rebuilding the table at once.
+     */
+    public OpenHashMap(boolean incremental) {
+        this.incremental = incremental;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Allocate empty slot arrays of the given power-of-two capacity.
+     */
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        vals = new Object[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * 0.75);
+    }
+
+    /**
+     * Home slot of a hash code, identical to CustomHashMap's bucket index.
+     */
+    private static int home(int hash, int mask) {
+        return Math.abs(hash) & mask;
+    }
+
+    /**
+     * How far the entry in slot i sits from its home slot.
+     */
+    private static int distance(int[] hashes, int mask, int i) {
+        return (i - home(hashes[i], mask)) & mask;
+    }
+
+    /**
+     * Find the slot holding the given key, or -1 if it is not present.
+     * Stops early once the probe reaches entries whose home lies after the key's home.
+     */
+    private static int findSlot(Object[] keys, int[] hashes, int mask, Object key, int hash) {
+        int i = home(hash, mask);
+        int d = 0;
+        while (keys[i] != null) {
+            int di = distance(hashes, mask, i);
+            if (di < d) {
+                return -1;
+            }
+            if (di == d && hashes[i] == hash && keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            d++;
+        }
+        return -1;
+    }
+
+    /**
+     * Place a key that is known to be absent after all entries sharing or
+     * preceding its home slot, shifting the remainder of the run one slot right.
+     */
+    private static void insertNew(Object[] keys, Object[] vals, int[] hashes, int mask,
+                                  Object key, Object value, int hash) {
+        int i = home(hash, mask);
+        int d = 0;
+        while (keys[i] != null && distance(hashes, mask, i) >= d) {
+            i = (i + 1) & mask;
+            d++;
+        }
+
+        if (keys[i] != null) {
+            int j = i;
+            while (keys[j] != null) {
+                j = (j + 1) & mask;
+            }
+            while (j != i) {
+                int prev = (j - 1) & mask;
+                keys[j] = keys[prev];
+                vals[j] = vals[prev];
+                hashes[j] = hashes[prev];
+                j = prev;
+            }
+        }
+
+        keys[i] = key;
+        vals[i] = value;
+        hashes[i] = hash;
+    }
+
+    /**
+     * Empty a slot and shift the displaced entries that follow it back by one,
+     * so no tombstones are needed and the home-slot ordering is preserved.
+     */
+    private static void deleteSlot(Object[] keys, Object[] vals, int[] hashes, int mask, int hole) {
+        int next = (hole + 1) & mask;
+        while (keys[next] != null && distance(hashes, mask, next) > 0) {
+            keys[hole] = keys[next];
+            vals[hole] = vals[next];
+            hashes[hole] = hashes[next];
+            hole = next;
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        vals[hole] = null;
+        hashes[hole] = 0;
+    }
+
+    /**
+     * Whether an incremental resize is still draining the old table.
+     */
+    private boolean migrating() {
+        return oldKeys != null;
+    }
+
+    /**
+     * Insert or update a key-value pair in the hash map.
+     * If key exists, updates its value. Otherwise, adds new entry.
+     * Triggers rehashing if load factor exceeds 0.75.
+     */
+    public void put(K key, V value) {
+        int hash = key.hashCode();
+        int slot = findSlot(keys, hashes, mask, key, hash);
+        if (slot >= 0) {
+            vals[slot] = value;
+            return;
+        }
+
+        if (migrating()) {
+            slot = findSlot(oldKeys, oldHashes, oldMask, key, hash);
+            if (slot >= 0) {
+                oldVals[slot] = value;
+                return;
+            }
+            // A key whose old home has not been migrated yet must queue behind
+            // its siblings there, otherwise it would overtake them in iteration order
+            if (home(hash, oldMask) >= migrateCursor) {
+                insertNew(oldKeys, oldVals, oldHashes, oldMask, key, value, hash);
+            } else {
+                insertNew(keys, vals, hashes, mask, key, value, hash);
+            }
+            size++;
+            migrateStep();
+        } else {
+            insertNew(keys, vals, hashes, mask, key, value, hash);
+            size++;
+        }
+
+        if (size > threshold) {
+            rehash();
+        }
+    }
+
+    /**
+     * Capacity a map holding the given number of keys ends up with when they are
+     * put one by one: the table doubles from INITIAL_CAPACITY while size exceeds 3/4.
+     */
+    private static int capacityFor(int count) {
+        int capacity = INITIAL_CAPACITY;
+        while (count > (int) (capacity * 0.75)) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Grow the table right away to the capacity it would reach holding the
+     * given number of keys, so putting up to that many causes no further
+     * resize. Iteration order is unaffected: it only depends on the final
+     * capacity, which is the same as growing one doubling at a time.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) {
+            GigMatchEvents.HashMapResize event = new GigMatchEvents.HashMapResize();
+            event.begin();
+            int oldCapacity = keys.length;
+            resize(capacity);
+            finishMigration();
+            commitResize(event, oldCapacity, false);
+        }
+    }
+
+    /**
+     * Fill an empty map with distinct keys, leaving it exactly as putting them
+     * one by one in the given order would (same capacity and iteration order).
+     * Entries are stably sorted by home slot and laid out in a single pass, so
+     * loading n keys costs O(n + capacity) without any run shifting.
+     */
+    public void putAllNew(K[] newKeys, V[] newValues, int count) {
+        if (size != 0) {
+            throw new IllegalStateException("putAllNew requires an empty map");
+        }
+        int capacity = capacityFor(count);
+        allocate(capacity);
+        dropOldTable();
+
+        // Stable counting sort of the entries by home slot
+        int[] entryHashes = new int[count];
+        int[] homeStart = new int[capacity + 1];
+        for (int i = 0; i < count; i++) {
+            entryHashes[i] = newKeys[i].hashCode();
+            homeStart[home(entryHashes[i], mask) + 1]++;
+        }
+        for (int h = 0; h < capacity; h++) {
+            homeStart[h + 1] += homeStart[h];
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[homeStart[home(entryHashes[i], mask)]++] = i;
+        }
+
+        // Entries that run past the last slot wrap to the front, ahead of entries
+        // homed there: find how many wrap by reserving that many front slots
+        // until the count stops changing
+        int wrapped = 0;
+        while (true) {
+            int next = wrapped;
+            for (int k = 0; k < count; k++) {
+                next = Math.max(home(entryHashes[order[k]], mask), next) + 1;
+            }
+            int overflow = Math.max(0, next - capacity);
+            if (overflow == wrapped) {
+                break;
+            }
+            wrapped = overflow;
+        }
+
+        int next = wrapped;
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            int pos = Math.max(home(entryHashes[i], mask), next);
+            next = pos + 1;
+            int slot = pos & mask;
+            keys[slot] = newKeys[i];
+            vals[slot] = newValues[i];
+            hashes[slot] = entryHashes[i];
+        }
+        size = count;
+    }
+
+    /**
+     * Retrieve the value associated with a key.
+     * Returns null if key is not found.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int hash = key.hashCode();
+        int slot = findSlot(keys, hashes, mask, key, hash);
+        if (slot >= 0) {
+            return (V) vals[slot];
+        }
+        if (migrating()) {
+            slot = findSlot(oldKeys, oldHashes, oldMask, key, hash);
+            if (slot >= 0) {
+                return (V) oldVals[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if the hash map contains a specific key.
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Remove a key-value pair from the hash map.
+     * Returns the removed value, or null if key was not found.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int hash = key.hashCode();
+        V value = null;
+
+        int slot = findSlot(keys, hashes, mask, key, hash);
+        if (slot >= 0) {
+            value = (V) vals[slot];
+            deleteSlot(keys, vals, hashes, mask, slot);
+            size--;
+        } else if (migrating()) {
+            slot = findSlot(oldKeys, oldHashes, oldMask, key, hash);
+            if (slot >= 0) {
+                value = (V) oldVals[slot];
+                deleteSlot(oldKeys, oldVals, oldHashes, oldMask, slot);
+                size--;
+            }
+        }
+
+        if (migrating()) {
+            migrateStep();
+        }
+        return value;
+    }
+
+    /**
+     * Step to the next occupied position in iteration order, or -1 at the end.
+     * Positions below capacity walk the table skipping entries that wrapped past
+     * the last slot; positions from capacity on revisit the start of the table to
+     * emit those wrapped entries last, where their home slot places them.
+     */
+    private int advance(int pos) {
+        int capacity = keys.length;
+        for (pos++; pos < capacity; pos++) {
+            if (keys[pos] != null && distance(hashes, mask, pos) <= pos) {
+                return pos;
+            }
+        }
+        int i = pos - capacity;
+        if (i < capacity && keys[i] != null && distance(hashes, mask, i) > i) {
+            return pos;
+        }
+        return -1;
+    }
+
+    /**
+     * Slot index for an iteration position returned by advance.
+     */
+    private int slotOf(int pos) {
+        return pos < keys.length ? pos : pos - keys.length;
+    }
+
+    /**
+     * Home slot of a key in the current table. Iteration visits keys by
+     * ascending home slot and keys sharing a home in insertion order, so the
+     * iteration order of a few known keys can be reproduced without a scan.
+     */
+    public int homeOf(K key) {
+        return home(key.hashCode(), mask);
+    }
+
+    /**
+     * Get the number of key-value pairs stored.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Structural statistics of the table: load, keys per home slot and probe
+     * lengths. Keys still waiting in the old table of an incremental resize are
+     * counted at their new home, with their probe length in the old table.
+     */
+    public HashMapStats stats() {
+        HashMapStats.Builder stats = new HashMapStats.Builder();
+        int[] perHome = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                perHome[home(hashes[i], mask)]++;
+                stats.probe(distance(hashes, mask, i) + 1);
+            }
+        }
+        if (migrating()) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    perHome[home(oldHashes[i], mask)]++;
+                    stats.probe(distance(oldHashes, oldMask, i) + 1);
+                }
+            }
+        }
+        for (int chain : perHome) {
+            stats.bucket(chain);
+        }
+        return stats.build(resizes);
+    }
+
+    /**
+     * Get a list of all keys in the hash map.
+     * Order is not guaranteed.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<K> keySet() {
+        finishMigration();
+        ArrayList<K> result = new ArrayList<>(size);
+        for (int pos = advance(-1); pos >= 0; pos = advance(pos)) {
+            result.add((K) keys[slotOf(pos)]);
+        }
+        return result;
+    }
+
+    /**
+     * Get a list of all values in the hash map.
+     * Order is not guaranteed.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<V> values() {
+        finishMigration();
+        ArrayList<V> result = new ArrayList<>(size);
+        for (int pos = advance(-1); pos >= 0; pos = advance(pos)) {
+            result.add((V) vals[slotOf(pos)]);
+        }
+        return result;
+    }
+
+    /**
+     * Get a list of all entries in the hash map.
+     * Order is not guaranteed.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<CustomHashMap.MapEntry<K, V>> entrySet() {
+        finishMigration();
+        ArrayList<CustomHashMap.MapEntry<K, V>> result = new ArrayList<>(size);
+        for (int pos = advance(-1); pos >= 0; pos = advance(pos)) {
+            int slot = slotOf(pos);
+            result.add(new CustomHashMap.MapEntry<>((K) keys[slot], (V) vals[slot]));
+        }
+        return result;
+    }
+
+    /**
+     * Apply an action to every entry in iteration order without copying them.
+     * The action must not add or remove keys of this map.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        finishMigration();
+        for (int pos = advance(-1); pos >= 0; pos = advance(pos)) {
+            int slot = slotOf(pos);
+            action.accept((K) keys[slot], (V) vals[slot]);
+        }
+    }
+
+    /**
+     * Get this map's reusable cursor, rewound to the first entry.
+     * The same instance is returned on every call, so only one walk over a map
+     * can be in progress at a time, and keys must not be added or removed during it.
+     */
+    public Cursor cursor() {
+        finishMigration();
+        if (cursor == null) {
+            cursor = new Cursor();
+        }
+        cursor.pos = -1;
+        cursor.slot = -1;
+        return cursor;
+    }
+
+    /**
+     * Allocation-free walk over the entries in place, in iteration order.
+     * Call next() before reading each entry.
+     */
+    public class Cursor {
+        private int pos;
+        private int slot;
+
+        /**
+         * Move to the next entry. Returns false once all entries have been visited.
+         */
+        public boolean next() {
+            if (pos == -2) {
+                return false;
+            }
+            pos = advance(pos);
+            if (pos < 0) {
+                pos = -2;
+                return false;
+            }
+            slot = slotOf(pos);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public K key() {
+            return (K) keys[slot];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V) vals[slot];
+        }
+
+        /**
+         * Replace the value of the current entry.
+         */
+        public void setValue(V value) {
+            vals[slot] = value;
+        }
+    }
+
+    /**
+     * Remove all entries and reset to initial capacity.
+     */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        dropOldTable();
+        size = 0;
+    }
+
+    /**
+     * Double the capacity. The current table becomes the old table and its
+     * entries are moved over by home slot, either right away or, in incremental
+     * mode, MIGRATE_STEP home slots per subsequent put/remove.
+     */
+    private void rehash() {
+        GigMatchEvents.HashMapResize event = new GigMatchEvents.HashMapResize();
+        event.begin();
+        int oldCapacity = keys.length;
+        resize(oldCapacity * 2);
+        if (!incremental) {
+            finishMigration();
+        }
+        commitResize(event, oldCapacity, incremental);
+    }
+
+    private void commitResize(GigMatchEvents.HashMapResize event, int oldCapacity, boolean spread) {
+        if (event.shouldCommit()) {
+            event.mapType = "OpenHashMap";
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = keys.length;
+            event.entries = size;
+            event.incremental = spread;
+            event.commit();
+        }
+    }
+
+    /**
+     * Make the current table the old one and allocate a larger one to migrate into.
+     * Entries of an old home all land on distinct new homes in insertion order,
+     * so any power-of-two growth keeps the ordering invariant.
+     */
+    private void resize(int capacity) {
+        // A previous resize must be complete before the table can be replaced again
+        finishMigration();
+
+        oldKeys = keys;
+        oldVals = vals;
+        oldHashes = hashes;
+        oldMask = mask;
+        migrateCursor = 0;
+
+        allocate(capacity);
+        resizes++;
+    }
+
+    /**
+     * Migrate the next MIGRATE_STEP home slots of the old table.
+     */
+    private void migrateStep() {
+        int end = Math.min(migrateCursor + MIGRATE_STEP, oldKeys.length);
+        while (migrateCursor < end) {
+            migrateHome(migrateCursor++);
+        }
+        if (migrateCursor == oldKeys.length) {
+            dropOldTable();
+        }
+    }
+
+    /**
+     * Migrate every remaining home slot of the old table.
+     */
+    private void finishMigration() {
+        if (!migrating()) {
+            return;
+        }
+        while (migrateCursor < oldKeys.length) {
+            migrateHome(migrateCursor++);
+        }
+        dropOldTable();
+    }
+
+    /**
+     * Move all entries whose old home is h into the new table, oldest first.
+     * Entries sharing a home are contiguous, and deleting the first shifts the
+     * next one into the same slot.
+     */
+    private void migrateHome(int h) {
+        int i = h;
+        int d = 0;
+        while (oldKeys[i] != null && distance(oldHashes, oldMask, i) > d) {
+            i = (i + 1) & oldMask;
+            d++;
+        }
+        while (oldKeys[i] != null && home(oldHashes[i], oldMask) == h) {
+            insertNew(keys, vals, hashes, mask, oldKeys[i], oldVals[i], oldHashes[i]);
+            deleteSlot(oldKeys, oldVals, oldHashes, oldMask, i);
+        }
+    }
+
+    /**
+     * Release the old table once it is fully drained.
+     */
+    private void dropOldTable() {
+        oldKeys = null;
+        oldVals = null;
+        oldHashes = null;
+        oldMask = 0;
+        migrateCursor = 0;
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reusable byte buffer that operations write their responses into.
+ * Numbers are formatted by hand straight into the buffer, and text is encoded
+ * with the platform charset (as FileWriter does), so appending a response
+ * creates no intermediate Strings. The buffer is reset and reused between
+ * commands or flushed to a stream once it gets large.
+ */
+public class OutputSink {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+
+    // Values of at least this magnitude are left to String.format
+    private static final double MAX_FAST_DECIMAL = 1e9;
+
+    private byte[] bytes;
+    private int length;
+
+    // Digits of an int, written backwards
+    private final byte[] digits = new byte[11];
+
+    public OutputSink() {
+        this(256);
+    }
+
+    public OutputSink(int capacity) {
+        bytes = new byte[Math.max(16, capacity)];
+        length = 0;
+    }
+
+    /**
+     * Number of bytes written so far.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Drop everything after the first newLength bytes (used to discard a partial response).
+     */
+    public void setLength(int newLength) {
+        length = newLength;
+    }
+
+    /**
+     * Drop all written bytes, keeping the buffer.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    public OutputSink append(String s) {
+        int n = s.length();
+        ensureCapacity(length + n);
+        byte[] b = bytes;
+        int pos = length;
+        for (int i = 0; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch >= 0x80) {
+                // Non-ASCII text goes through the charset encoder
+                length = pos;
+                return appendEncoded(s.substring(i));
+            }
+            b[pos++] = (byte) ch;
+        }
+        length = pos;
+        return this;
+    }
+
+    private OutputSink appendEncoded(String s) {
+        byte[] encoded = s.getBytes(Charset.defaultCharset());
+        return append(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Append all bytes of src (already encoded, e.g. a precompiled literal).
+     */
+    public OutputSink append(byte[] src) {
+        return append(src, 0, src.length);
+    }
+
+    /**
+     * Append len bytes of src starting at offset.
+     */
+    public OutputSink append(byte[] src, int offset, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(src, offset, bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Append everything written to another sink.
+     */
+    public OutputSink append(OutputSink other) {
+        return append(other.bytes, 0, other.length);
+    }
+
+    public OutputSink append(char ch) {
+        if (ch >= 0x80) {
+            return appendEncoded(String.valueOf(ch));
+        }
+        ensureCapacity(length + 1);
+        bytes[length++] = (byte) ch;
+        return this;
+    }
+
+    /**
+     * Append an int in decimal, as "%d" or String.valueOf would.
+     */
+    public OutputSink append(int value) {
+        ensureCapacity(length + 11);
+        if (value < 0) {
+            bytes[length++] = '-';
+        }
+        // Work with the negative value so Integer.MIN_VALUE needs no special case
+        int v = value < 0 ? value : -value;
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' - v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (n > 0) {
+            bytes[length++] = digits[--n];
+        }
+        return this;
+    }
+
+    /**
+     * Append a double with one decimal, exactly as String.format("%.1f") does:
+     * the shortest decimal representation of the value is rounded HALF_UP.
+     */
+    public OutputSink appendOneDecimal(double value) {
+        if (!(Math.abs(value) < MAX_FAST_DECIMAL)) {
+            return append(String.format(Locale.US, "%.1f", value));
+        }
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        double abs = Math.abs(value);
+
+        // Below MAX_FAST_DECIMAL, abs * 10 may be off by an ulp, but only next to
+        // an integer, where rounding is not in question. (2n+1)/20 is correctly
+        // rounded, so it is the double nearest to the halfway decimal n.5 / 10:
+        // the shortest digits of abs reach that halfway point exactly when abs is at least it.
+        long tenths = (long) (abs * 10);
+        if (abs >= (2 * tenths + 1) / 20.0) {
+            tenths++;
+        }
+
+        if (negative) {
+            append('-');
+        }
+        append((int) (tenths / 10));
+        ensureCapacity(length + 2);
+        bytes[length++] = '.';
+        bytes[length++] = (byte) ('0' + tenths % 10);
+        return this;
+    }
+
+    /**
+     * Append the platform line separator, as BufferedWriter.newLine() does.
+     */
+    public OutputSink newLine() {
+        return append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+    }
+
+    /**
+     * Write all bytes to the stream (the sink is not reset).
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Whether the bytes written from offset on start with the given prefix.
+     */
+    public boolean startsWith(int offset, byte[] prefix) {
+        if (length - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The written bytes decoded with the platform charset.
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, Charset.defaultCharset());
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Precompiled formatter for the query_freelancer and query_customer responses.
+ * The literal parts of each response shape are encoded to bytes once, and a
+ * response is written by copying them into the sink between the hand-formatted
+ * fields, so a query neither parses a format string nor boxes its arguments.
+ * Output is identical to the original String.format patterns:
+ *   "%s: %s, price: %d, rating: %.1f, completed: %d, cancelled: %d, skills: (%d,%d,%d,%d,%d), available: %s, burnout: %s"
+ *   "%s: total spent: $%d, loyalty tier: %s, blacklisted freelancer count: %d, total employment count: %d"
+ */
+public final class QueryFormatter {
+    // Freelancer response segments
+    private static final byte[] COLON = bytes(": ");
+    private static final byte[] PRICE = bytes(", price: ");
+    private static final byte[] RATING = bytes(", rating: ");
+    private static final byte[] COMPLETED = bytes(", completed: ");
+    private static final byte[] CANCELLED = bytes(", cancelled: ");
+    private static final byte[] SKILLS = bytes(", skills: (");
+    private static final byte[] AVAILABLE = bytes("), available: ");
+    private static final byte[] BURNOUT = bytes(", burnout: ");
+    private static final byte[] YES = bytes("yes");
+    private static final byte[] NO = bytes("no");
+
+    // Customer response segments
+    private static final byte[] TOTAL_SPENT = bytes(": total spent: $");
+    private static final byte[] LOYALTY_TIER = bytes(", loyalty tier: ");
+    private static final byte[] BLACKLIST_COUNT = bytes(", blacklisted freelancer count: ");
+    private static final byte[] EMPLOYMENT_COUNT = bytes(", total employment count: ");
+
+    private QueryFormatter() {
+    }
+
+    /**
+     * Append the query_freelancer response for a freelancer.
+     */
+    public static void appendFreelancer(OutputSink out, Freelancer f) {
+        FreelancerStore store = f.store;
+        int row = f.row;
+        int[][] skills = store.skills;
+
+        out.append(f.id).append(COLON).append(f.service);
+        out.append(PRICE).append(store.price[row]);
+        out.append(RATING).appendOneDecimal(store.ratings[row]);
+        out.append(COMPLETED).append(store.completedJobs[row]);
+        out.append(CANCELLED).append(store.cancelledJobs[row]);
+        out.append(SKILLS).append(skills[0][row])
+                .append(',').append(skills[1][row])
+                .append(',').append(skills[2][row])
+                .append(',').append(skills[3][row])
+                .append(',').append(skills[4][row]);
+        out.append(AVAILABLE).append(store.hasFlag(row, FreelancerStore.AVAILABLE) ? YES : NO);
+        out.append(BURNOUT).append(store.hasFlag(row, FreelancerStore.BURNOUT) ? YES : NO);
+    }
+
+    /**
+     * Append the query_customer response for a customer.
+     */
+    public static void appendCustomer(OutputSink out, Customer c) {
+        out.append(c.id).append(TOTAL_SPENT).append(c.totalSpent);
+        out.append(LOYALTY_TIER).append(c.getLoyaltyTier());
+        out.append(BLACKLIST_COUNT).append(c.getBlacklistCount());
+        out.append(EMPLOYMENT_COUNT).append(c.totalEmployments);
+    }
+
+    private static byte[] bytes(String literal) {
+        return literal.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Bucket-queue ranking of freelancers for one service.
+ * Composite scores are integers in [-4500, 10000], so every score gets its own
+ * bucket, plus a pointer to the highest non-empty bucket. Buckets are unordered:
+ * insert appends and remove moves the bucket's last entry into the hole, both
+ * O(1). The tie-break order (ID rank) is applied at query time: top-k walks
+ * buckets downward and sorts a bucket it reaches only if it changed since it
+ * was last sorted, which for the few top buckets is nearly sorted already.
+ *
+ * Off by default (-Dgigmatch.ranking=buckets selects it). Unlike MaxHeap,
+ * inserting a freelancer that is already ranked repositions it instead of
+ * adding a second copy, so on traces where the baseline leaves duplicate or
+ * stale entries (a service change of an employed freelancer) the output can
+ * differ from the default MaxHeap ranking.
+ */
+public class ScoreBucketIndex implements ServiceRanking {
+    // Bounds of MaxHeap.calculateCompositeScore
+    static final int MIN_SCORE = -4500;
+    static final int MAX_SCORE = 10000;
+
+    // Initial slots allocated for a bucket on first use
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    // buckets[score - MIN_SCORE] holds counts[...] freelancers, sorted by ID
+    // ascending unless unsorted[...] is set
+    private Freelancer[][] buckets;
+    private int[] counts;
+    private boolean[] unsorted;
+
+    // Index of the highest non-empty bucket, -1 when the index is empty
+    private int maxBucket;
+
+    // Number of freelancers ranked
+    private int size;
+
+    // Counters of the last top-k query
+    private int lastScanned;
+    private int lastBlacklistRejected;
+
+    private int[] serviceProfile;
+
+    // Registry providing precomputed lexicographic ranks for ID ordering
+    private IdRegistry<Freelancer> freelancerIds;
+    private final Comparator<Freelancer> byId;
+
+    public ScoreBucketIndex(int[] serviceProfile, IdRegistry<Freelancer> freelancerIds) {
+        this.serviceProfile = serviceProfile;
+        this.freelancerIds = freelancerIds;
+        this.buckets = new Freelancer[MAX_SCORE - MIN_SCORE + 1][];
+        this.counts = new int[MAX_SCORE - MIN_SCORE + 1];
+        this.unsorted = new boolean[MAX_SCORE - MIN_SCORE + 1];
+        this.byId = (a, b) -> freelancerIds.compare(a.handle, b.handle);
+        this.maxBucket = -1;
+        this.size = 0;
+    }
+
+    /**
+     * Inserts a freelancer into its score bucket.
+     * Freelancer.heapIndex holds its position inside that bucket.
+     */
+    public void insert(Freelancer freelancer) {
+        if (freelancer.heapIndex >= 0) {
+            remove(freelancer);
+        }
+
+        int score = MaxHeap.calculateCompositeScore(freelancer, serviceProfile);
+        freelancer.lastCompositeScore = score;
+        int b = score - MIN_SCORE;
+
+        Freelancer[] bucket = buckets[b];
+        int count = counts[b];
+        if (bucket == null) {
+            bucket = new Freelancer[INITIAL_BUCKET_CAPACITY];
+            buckets[b] = bucket;
+        } else if (count == bucket.length) {
+            Freelancer[] grown = new Freelancer[count * 2];
+            System.arraycopy(bucket, 0, grown, 0, count);
+            bucket = grown;
+            buckets[b] = bucket;
+        }
+
+        if (count > 0 && freelancerIds.compare(bucket[count - 1].handle, freelancer.handle) > 0) {
+            unsorted[b] = true;
+        }
+        bucket[count] = freelancer;
+        freelancer.heapIndex = count;
+        counts[b] = count + 1;
+
+        if (b > maxBucket) {
+            maxBucket = b;
+        }
+        size++;
+    }
+
+    /**
+     * Removes a freelancer from its score bucket.
+     */
+    public void remove(Freelancer freelancer) {
+        int pos = freelancer.heapIndex;
+        if (pos < 0) return;
+
+        int b = freelancer.lastCompositeScore - MIN_SCORE;
+        Freelancer[] bucket = buckets[b];
+        int count = counts[b];
+        if (pos >= count || bucket[pos] != freelancer) return;
+
+        count--;
+        if (pos < count) {
+            bucket[pos] = bucket[count];
+            bucket[pos].heapIndex = pos;
+            unsorted[b] = true;
+        }
+        bucket[count] = null;
+        counts[b] = count;
+        freelancer.heapIndex = -1;
+        size--;
+
+        while (maxBucket >= 0 && counts[maxBucket] == 0) {
+            maxBucket--;
+        }
+    }
+
+    /**
+     * Re-buckets a freelancer after its composite score inputs changed.
+     */
+    public void updateFreelancer(Freelancer freelancer) {
+        if (freelancer.heapIndex < 0) return;
+        remove(freelancer);
+        insert(freelancer);
+    }
+
+    /**
+     * Bucket operations do not grow with the ranking, so there is nothing to batch.
+     */
+    public boolean prefersRebuild(int changes) {
+        return false;
+    }
+
+    public void beginBulk() {
+    }
+
+    public void endBulk() {
+    }
+
+    public boolean isSelfContained(String service) {
+        for (int b = 0; b <= maxBucket; b++) {
+            Freelancer[] bucket = buckets[b];
+            for (int i = 0; i < counts[b]; i++) {
+                Freelancer f = bucket[i];
+                if (f.heapIndex != i || f.lastCompositeScore - MIN_SCORE != b || !f.service.equals(service)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns top eligible freelancers in sorted order (highest composite score first).
+     */
+    public ArrayList<Freelancer> getTopEligibleFreelancers(int needed, Customer customer) {
+        ArrayList<Freelancer> result = new ArrayList<>();
+        int scanned = 0;
+        int rejected = 0;
+        for (int b = maxBucket; b >= 0 && result.size() < needed; b--) {
+            int count = counts[b];
+            if (unsorted[b]) {
+                sortBucket(b);
+            }
+            Freelancer[] bucket = buckets[b];
+            for (int i = 0; i < count && result.size() < needed; i++) {
+                Freelancer f = bucket[i];
+                scanned++;
+                if (f.isAvailable() && !f.isPlatformBlacklisted()) {
+                    if (customer.isBlacklisted(f.handle)) {
+                        rejected++;
+                    } else {
+                        result.add(f);
+                    }
+                }
+            }
+        }
+        lastScanned = scanned;
+        lastBlacklistRejected = rejected;
+        return result;
+    }
+
+    public int lastScanned() {
+        return lastScanned;
+    }
+
+    public int lastBlacklistRejected() {
+        return lastBlacklistRejected;
+    }
+
+    /**
+     * Number of freelancers currently ranked.
+     */
+    public int size() {
+        return size;
+    }
+
+    public void appendStats(OutputSink out) {
+        int used = 0;
+        int largest = 0;
+        for (int b = 0; b <= maxBucket; b++) {
+            if (counts[b] > 0) {
+                used++;
+                largest = Math.max(largest, counts[b]);
+            }
+        }
+        out.append("buckets size ").append(size).append(", non-empty buckets ").append(used)
+                .append(", largest bucket ").append(largest);
+    }
+
+    /**
+     * Puts a bucket into tie-break order (ID ascending) and renumbers its entries.
+     * Buckets are mostly sorted runs with a few appended or moved entries, which
+     * the merge sort handles in close to linear time.
+     */
+    private void sortBucket(int b) {
+        Freelancer[] bucket = buckets[b];
+        int count = counts[b];
+        Arrays.sort(bucket, 0, count, byId);
+        for (int i = 0; i < count; i++) {
+            bucket[i].heapIndex = i;
+        }
+        unsorted[b] = false;
+    }
+
+    /**
+     * Writes each non-empty bucket as its index, count and freelancer handles in order.
+     */
+    public void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(maxBucket);
+        for (int b = 0; b <= maxBucket; b++) {
+            int count = counts[b];
+            if (count == 0) continue;
+            out.writeInt(b);
+            out.writeInt(count);
+            Freelancer[] bucket = buckets[b];
+            for (int i = 0; i < count; i++) {
+                out.writeInt(bucket[i].handle);
+            }
+        }
+        out.writeInt(-1);
+    }
+
+    /**
+     * Restores the buckets exactly as written; each is sorted again when a query reaches it.
+     */
+    public void readFrom(SnapshotInput in, IdRegistry<Freelancer> freelancerIds) throws IOException {
+        size = in.readInt();
+        maxBucket = in.readInt();
+        int b;
+        while ((b = in.readInt()) >= 0) {
+            int count = in.readInt();
+            Freelancer[] bucket = new Freelancer[Math.max(INITIAL_BUCKET_CAPACITY, count)];
+            for (int i = 0; i < count; i++) {
+                bucket[i] = freelancerIds.get(in.readInt());
+            }
+            buckets[b] = bucket;
+            counts[b] = count;
+            unsorted[b] = true;
+        }
+    }
+}
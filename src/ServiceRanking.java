@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Per-service ranking of freelancers by composite score.
+ * Ties on composite score are broken by lexicographically smaller ID first.
+ * Implemented by MaxHeap (default) and ScoreBucketIndex.
+ */
+public interface ServiceRanking {
+    /**
+     * Adds a freelancer, computing its composite score for this service.
+     */
+    void insert(Freelancer freelancer);
+
+    /**
+     * Removes a freelancer. Does nothing if it is not ranked here.
+     */
+    void remove(Freelancer freelancer);
+
+    /**
+     * Recomputes a ranked freelancer's composite score and repositions it.
+     */
+    void updateFreelancer(Freelancer freelancer);
+
+    /**
+     * Whether applying the given number of insertions and removals is cheaper
+     * as one rebuild (beginBulk/endBulk) than one at a time.
+     */
+    boolean prefersRebuild(int changes);
+
+    /**
+     * Start applying insertions and removals without restoring order after each
+     * one; the ranking must not be read or updated until endBulk(). Only valid
+     * while every ranking is self-contained, as the resulting layout can differ
+     * from the one-at-a-time layout.
+     */
+    void beginBulk();
+
+    /**
+     * Restore order over everything inserted and removed since beginBulk().
+     */
+    void endBulk();
+
+    /**
+     * Whether every entry is a freelancer of the given service, ranked only once,
+     * whose heapIndex points at that entry. Only such rankings are independent
+     * of the other services' rankings.
+     */
+    boolean isSelfContained(String service);
+
+    /**
+     * Returns up to needed available, non-blacklisted freelancers, best first.
+     */
+    ArrayList<Freelancer> getTopEligibleFreelancers(int needed, Customer customer);
+
+    /**
+     * Entries examined by the last getTopEligibleFreelancers call.
+     */
+    int lastScanned();
+
+    /**
+     * Entries the last getTopEligibleFreelancers call skipped because the customer blacklisted them.
+     */
+    int lastBlacklistRejected();
+
+    /**
+     * Number of entries in the ranking.
+     */
+    int size();
+
+    /**
+     * Append a one-line summary of the ranking's structure (for the stats command).
+     */
+    void appendStats(OutputSink out);
+
+    /**
+     * Writes the ranking's internal layout (freelancer handles in place) to a snapshot.
+     */
+    void writeTo(SnapshotOutput out) throws IOException;
+
+    /**
+     * Restores the layout written by writeTo into an empty ranking, resolving
+     * handles through the freelancer registry. Freelancer heapIndex and
+     * lastCompositeScore are restored separately.
+     */
+    void readFrom(SnapshotInput in, IdRegistry<Freelancer> freelancerIds) throws IOException;
+}
@@ -0,0 +1,149 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for the binary snapshot format written by SnapshotOutput.
+ * The channel is read in large chunks into a direct buffer and whole columns
+ * are bulk-copied out of it into primitive arrays.
+ */
+public class SnapshotInput {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Scratch space for decoding non-ASCII strings
+    private byte[] scratch = new byte[64];
+    private char[] chars = new char[64];
+
+    public SnapshotInput(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    public int readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Read a string written by SnapshotOutput.writeString.
+     */
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt snapshot: negative string length");
+        }
+        if (length <= BUFFER_SIZE) {
+            require(length);
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            // ASCII fast path straight from the buffer
+            int start = buffer.position();
+            int i = 0;
+            while (i < length) {
+                byte b = buffer.get(start + i);
+                if (b < 0) break;
+                chars[i++] = (char) b;
+            }
+            if (i == length) {
+                buffer.position(start + length);
+                return new String(chars, 0, length);
+            }
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        readBytes(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public void readBytes(byte[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            require(1);
+            int n = Math.min(count, buffer.remaining());
+            buffer.get(values, offset, n);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Fill the first count values of an int column.
+     */
+    public void readInts(int[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(4);
+            int n = Math.min(count, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(values, offset, n);
+            buffer.position(buffer.position() + n * 4);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Fill the first count values of a long column.
+     */
+    public void readLongs(long[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(8);
+            int n = Math.min(count, buffer.remaining() / 8);
+            buffer.asLongBuffer().get(values, offset, n);
+            buffer.position(buffer.position() + n * 8);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Fill the first count values of a double column.
+     */
+    public void readDoubles(double[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(8);
+            int n = Math.min(count, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(values, offset, n);
+            buffer.position(buffer.position() + n * 8);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Make sure at least the given number of bytes (at most BUFFER_SIZE) is buffered.
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated snapshot");
+            }
+        }
+        buffer.flip();
+    }
+}
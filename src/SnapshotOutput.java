@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer for the binary snapshot format: primitives and whole
+ * primitive columns are encoded big-endian into a direct buffer, which is
+ * written to the channel each time it fills.
+ */
+public class SnapshotOutput implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Bytes handed to the channel so far
+    private long written;
+
+    public SnapshotOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public void writeByte(int value) throws IOException {
+        require(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) throws IOException {
+        require(4);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        require(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Write a string as an int byte count followed by its UTF-8 bytes.
+     */
+    public void writeString(String value) throws IOException {
+        int n = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < n && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii && n <= BUFFER_SIZE - 4) {
+            require(4 + n);
+            buffer.putInt(n);
+            for (int i = 0; i < n; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    public void writeBytes(byte[] values, int offset, int count) throws IOException {
+        while (count > 0) {
+            require(1);
+            int n = Math.min(count, buffer.remaining());
+            buffer.put(values, offset, n);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Write the first count values of an int column.
+     */
+    public void writeInts(int[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(4);
+            int n = Math.min(count, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * 4);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Write the first count values of a long column.
+     */
+    public void writeLongs(long[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(8);
+            int n = Math.min(count, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * 8);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Write the first count values of a double column.
+     */
+    public void writeDoubles(double[] values, int count) throws IOException {
+        int offset = 0;
+        while (count > 0) {
+            require(8);
+            int n = Math.min(count, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * 8);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Total bytes written, including those still buffered.
+     */
+    public long size() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Write out everything buffered so far.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
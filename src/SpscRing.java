@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free ring buffer between exactly one producer thread and one
+ * consumer thread. Slots are preallocated mutable entries that are reused:
+ * the producer claims the next free slot, fills it in and publishes it; the
+ * consumer takes the next published slot, reads it and releases it.
+ * Entries come out in the order they were published.
+ *
+ * The two sides only share the published and released sequence counters,
+ * written with ordered (lazySet) stores; each side caches the other's counter
+ * and only rereads it when the cached value says the ring is full or empty.
+ */
+public class SpscRing<T> {
+    // Busy-spin this many times before yielding, then parking, while waiting
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final Object[] entries;
+    private final int mask;
+
+    // Number of slots published by the producer / released by the consumer
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    // Set by the producer after its last publish
+    private volatile boolean closed;
+
+    // Producer-side state
+    private long claimSequence;
+    private long cachedReleased;
+
+    // Consumer-side state
+    private long takeSequence;
+    private long cachedPublished;
+
+    /**
+     * Create a ring with at least the given number of slots (rounded up to a
+     * power of two), each filled from the factory.
+     */
+    public SpscRing(int capacity, Supplier<T> factory) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Producer: wait for a free slot and return it. The slot must be published
+     * before the next claim.
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        long wrapPoint = claimSequence - entries.length;
+        if (cachedReleased <= wrapPoint) {
+            int tries = 0;
+            while ((cachedReleased = released.get()) <= wrapPoint) {
+                tries = backOff(tries);
+            }
+        }
+        return (T) entries[(int) claimSequence & mask];
+    }
+
+    /**
+     * Producer: make the claimed slot visible to the consumer.
+     */
+    public void publish() {
+        published.lazySet(++claimSequence);
+    }
+
+    /**
+     * Producer: signal that nothing more will be published.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Consumer: wait for the next published slot and return it, or null once
+     * the ring is closed and drained. The slot must be released before the next take.
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        if (takeSequence >= cachedPublished) {
+            int tries = 0;
+            while ((cachedPublished = published.get()) <= takeSequence) {
+                if (closed) {
+                    // Everything published before close() is visible now
+                    cachedPublished = published.get();
+                    if (cachedPublished <= takeSequence) {
+                        return null;
+                    }
+                    break;
+                }
+                tries = backOff(tries);
+            }
+        }
+        return (T) entries[(int) takeSequence & mask];
+    }
+
+    /**
+     * Consumer: hand the taken slot back to the producer for reuse.
+     */
+    public void release() {
+        released.lazySet(++takeSequence);
+    }
+
+    /**
+     * Number of slots in the ring.
+     */
+    public int capacity() {
+        return entries.length;
+    }
+
+    private static int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return tries + 1;
+    }
+}